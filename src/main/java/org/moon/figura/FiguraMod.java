@@ -2,7 +2,9 @@ package org.moon.figura;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientEntityEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
@@ -29,6 +31,9 @@ import org.moon.figura.gui.PopupMenu;
 import org.moon.figura.gui.actionwheel.ActionWheel;
 import org.moon.figura.lua.FiguraAPIManager;
 import org.moon.figura.lua.FiguraLuaPrinter;
+import org.moon.figura.lua.api.entity.EntityAPI;
+import org.moon.figura.lua.api.sound.SoundBufferCache;
+import org.moon.figura.lua.api.world.WorldCache;
 import org.moon.figura.lua.docs.FiguraDocsManager;
 import org.moon.figura.mixin.SkullBlockEntityAccessor;
 import org.moon.figura.trust.TrustManager;
@@ -68,6 +73,10 @@ public class FiguraMod implements ClientModInitializer {
 
 		//register events
 		ClientTickEvents.START_CLIENT_TICK.register(FiguraMod::tick);
+		ClientEntityEvents.ENTITY_LOAD.register(EntityAPI::onEntityLoad);
+		ClientEntityEvents.ENTITY_UNLOAD.register(EntityAPI::onEntityUnload);
+		ClientEntityEvents.ENTITY_UNLOAD.register(AvatarManager::onEntityUnload);
+		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> EntityAPI.clearPlayers());
 		WorldRenderEvents.START.register(levelRenderer -> AvatarManager.onWorldRender(levelRenderer.tickDelta()));
 		WorldRenderEvents.END.register(levelRenderer -> AvatarManager.afterWorldRender(levelRenderer.tickDelta()));
 		WorldRenderEvents.AFTER_ENTITIES.register(FiguraMod::renderFirstPersonWorldParts);
@@ -85,7 +94,10 @@ public class FiguraMod implements ClientModInitializer {
 	private static void tick(Minecraft client) {
 		NetworkManager.tick();
 		LocalAvatarLoader.tickWatchedKey();
+		WorldCache.tick();
+		SoundBufferCache.tick();
 		AvatarManager.tickLoadedAvatars();
+		NetworkManager.flushPings();
 		FiguraLuaPrinter.printChatFromQueue();
 		ticks++;
 	}
@@ -73,6 +73,11 @@ public class Animation {
         this.animationParts.computeIfAbsent(part, modelPart -> new ArrayList<>()).add(anim);
     }
 
+    //used when the animation is rebuilt from its data, since the keyframes are only read with the model parts
+    public void copyKeyframes(Animation animation) {
+        this.animationParts.putAll(animation.animationParts);
+    }
+
     public void tick() {
         //tick time
         this.controller.tick();
@@ -1,7 +1,7 @@
 package org.moon.figura.avatars;
 
-import com.mojang.blaze3d.audio.OggAudioStream;
-import com.mojang.blaze3d.audio.SoundBuffer;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.mojang.blaze3d.platform.Lighting;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.PoseStack;
@@ -31,17 +31,20 @@ import org.luaj.vm2.Varargs;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.animation.Animation;
 import org.moon.figura.animation.AnimationPlayer;
+import org.moon.figura.avatars.AvatarLoadPipeline.Stage;
 import org.moon.figura.avatars.model.ParentType;
 import org.moon.figura.avatars.model.PartCustomization;
 import org.moon.figura.avatars.model.rendering.AvatarRenderer;
 import org.moon.figura.avatars.model.rendering.ImmediateAvatarRenderer;
 import org.moon.figura.avatars.model.rendering.PartFilterScheme;
+import org.moon.figura.avatars.model.rendering.texture.FiguraTextureSet;
 import org.moon.figura.config.Config;
 import org.moon.figura.lua.FiguraLuaPrinter;
 import org.moon.figura.lua.FiguraLuaRuntime;
 import org.moon.figura.lua.api.event.LuaEvent;
 import org.moon.figura.lua.api.ping.PingArg;
 import org.moon.figura.lua.api.ping.PingFunction;
+import org.moon.figura.lua.api.sound.CustomSound;
 import org.moon.figura.lua.api.sound.SoundAPI;
 import org.moon.figura.math.matrix.FiguraMat3;
 import org.moon.figura.math.matrix.FiguraMat4;
@@ -50,39 +53,51 @@ import org.moon.figura.trust.TrustContainer;
 import org.moon.figura.trust.TrustManager;
 import org.moon.figura.utils.EntityUtils;
 import org.moon.figura.utils.RefilledNumber;
+import org.moon.figura.utils.RollingAverage;
 import org.moon.figura.utils.Version;
 import org.moon.figura.utils.ui.UIHelper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 //the avatar class
 //contains all things related to the avatar
 //and also related to the owner, like trust settings
 public class Avatar {
 
-	private static CompletableFuture<Void> tasks;
-
 	//properties
 	public final UUID owner;
-	public CompoundTag nbt;
+	public volatile CompoundTag nbt; //only kept while loading, unless the memory mode says otherwise, use getNbt() outside of loading
+	private volatile byte[] compressedNbt; //what the host keeps instead, to upload or save
+	private volatile boolean hasData;
 	public boolean loaded = true;
+	private AvatarLoadPipeline.Task loadTask;
+	private volatile int loadedStages; //bit mask of the completed load stages
 	public final boolean isHost;
 
 	//metadata
 	public String name, entityName;
 	public String authors;
 	public String version;
-	public int fileSize;
+	private volatile int fileSize = -1; //compressed size, -1 when not known yet
 	public String color;
 
 	//Runtime data
@@ -91,11 +106,14 @@ public class Avatar {
 
 	public final TrustContainer trust;
 
-	public final Map<String, SoundBuffer> customSounds = new HashMap<>();
+	public final Map<String, CustomSound> customSounds = new ConcurrentHashMap<>();
 	public final Map<Integer, Animation> animations = new ConcurrentHashMap<>();
 
 	private int initLimit, worldRenderLimit;
 
+	private float lastDelta = Float.NaN;
+	private LuaValue lastDeltaValue = LuaValue.NIL;
+
 	//runtime status
 	public boolean hasTexture = false;
 	public boolean scriptError = false;
@@ -110,7 +128,13 @@ public class Avatar {
 	public int worldRenderInstructions, entityRenderInstructions, postEntityRenderInstructions, postWorldRenderInstructions;
 	public int accumulatedInitInstructions, accumulatedTickInstructions, accumulatedEntityRenderInstructions, accumulatedWorldRenderInstructions;
 
+	//event times, in nanoseconds
+	public final RollingAverage entityTickTime = new RollingAverage(), worldTickTime = new RollingAverage();
+	public final RollingAverage entityRenderTime = new RollingAverage(), postEntityRenderTime = new RollingAverage();
+	public final RollingAverage worldRenderTime = new RollingAverage(), postWorldRenderTime = new RollingAverage();
+
 	public final RefilledNumber particlesRemaining, soundsRemaining;
+	public AvatarVariables variables = new AvatarVariables();
 
 	public Avatar(UUID owner) {
 		this.owner = owner;
@@ -121,58 +145,293 @@ public class Avatar {
 		entityName = EntityUtils.getNameForUUID(owner);
 	}
 
-	private static CompletableFuture<Void> run(Runnable toRun) {
-		if (tasks == null || tasks.isDone()) {
-			tasks = CompletableFuture.runAsync(toRun);
-		} else {
-			tasks.thenRun(toRun);
-		}
-		return tasks;
+	//loads the avatar from its compressed nbt, decompressing it in the load pipeline
+	public void load(byte[] data) {
+		load(data, null);
 	}
 
-	public void load(CompoundTag nbt) {
-		CompletableFuture<Void> future = run(() -> {
-			this.nbt = nbt;
-			loaded = false;
+	//same as above, running onDecodeFailure in the pipeline when the data can not be decompressed
+	public void load(byte[] data, Runnable onDecodeFailure) {
+		load(() -> data, onDecodeFailure);
+	}
+
+	//same as above, but the data is also read in the pipeline, like from the avatar cache, where null means it could not be read
+	public void load(Supplier<byte[]> source, Runnable onDecodeFailure) {
+		load(() -> {
+			try {
+				byte[] data = source.get();
+				if (data == null)
+					throw new IOException("Missing avatar data");
+
+				fileSize = data.length;
+				if (isHost && Config.AVATAR_MEMORY_MODE.asInt() != 0) compressedNbt = data;
+				return NbtIo.readCompressed(new ByteArrayInputStream(data));
+			} catch (Exception e) {
+				if (onDecodeFailure != null) onDecodeFailure.run();
+				throw new CompletionException(e);
+			}
 		});
+	}
 
-		future.join();
+	public void load(CompoundTag nbt) {
+		load(nbt, -1);
+	}
 
+	//same as above, when the compressed size is already known, like from a .moon file
+	public void load(CompoundTag nbt, int fileSize) {
+		this.fileSize = fileSize;
 		if (nbt == null) {
+			this.nbt = null;
 			loaded = true;
 			return;
 		}
 
-		future.thenRun(() -> { //metadata
-			try {
-				CompoundTag metadata = nbt.getCompound("metadata");
-				name = metadata.getString("name");
-				authors = metadata.getString("authors");
-				version = metadata.getString("ver");
-				if (metadata.contains("color")) color = metadata.getString("color");
-				fileSize = getFileSize();
-				versionStatus = checkVersion();
-				if (entityName == null) entityName = name;
-			} catch (Exception e) {
-				FiguraMod.LOGGER.error("", e);
-			}
-		}).thenRun(() -> { //animations and models
-			try {
-				loadAnimations();
-				renderer = new ImmediateAvatarRenderer(this);
-			} catch (Exception e) {
-				FiguraMod.LOGGER.error("", e);
-			}
-		}).thenRun(() -> { //sounds and script
+		load(() -> nbt);
+	}
+
+	//each stage is usable as soon as it completes: the model renders with its default transforms before the script is ready,
+	//the script starts as soon as the model is built, and the sounds are decoded in the background
+	private void load(Supplier<CompoundTag> source) {
+		loaded = false;
+		loadedStages = 0;
+		loadTask = AvatarLoadPipeline.submit(task -> {
+			CompletableFuture<CompoundTag> decode = task.supply(Stage.DECODE, () -> { //nbt and metadata
+				CompoundTag nbt = source.get();
+				this.nbt = nbt;
+				hasData = true;
+				loadMetadata();
+				completeStage(Stage.DECODE);
+				return nbt;
+			});
+
+			CompletableFuture<List<FiguraTextureSet>> textures = task.then(decode, Stage.TEXTURES, nbt -> {
+				try {
+					return ImmediateAvatarRenderer.readTextures(nbt);
+				} catch (Exception e) {
+					FiguraMod.LOGGER.error("", e);
+					return null;
+				} finally {
+					completeStage(Stage.TEXTURES);
+				}
+			});
+
+			CompletableFuture<Void> model = task.after(textures, Stage.MODEL, textureSets -> { //animations and models
+				if (task.isCancelled()) {
+					if (textureSets != null) textureSets.forEach(FiguraTextureSet::clean);
+					throw new CancellationException();
+				}
+
+				try {
+					loadAnimations();
+					if (textureSets != null) setRenderer(task, new ImmediateAvatarRenderer(this, textureSets));
+				} catch (Exception e) {
+					FiguraMod.LOGGER.error("", e);
+				}
+				completeStage(Stage.MODEL);
+				return null;
+			});
+
+			CompletableFuture<Void> sounds = task.then(decode, Stage.SOUNDS, nbt -> {
+				try {
+					loadCustomSounds();
+				} catch (Exception e) {
+					FiguraMod.LOGGER.error("", e);
+				}
+				completeStage(Stage.SOUNDS);
+				return null;
+			});
+
+			//the script needs the models global
+			CompletableFuture<Void> script = task.then(model, Stage.SCRIPT, v -> {
+				try {
+					createLuaRuntime();
+				} catch (Exception e) {
+					FiguraMod.LOGGER.error("", e);
+				}
+				completeStage(Stage.SCRIPT);
+				return null;
+			});
+
+			return CompletableFuture.allOf(script, sounds).whenComplete((v, e) -> {
+				if (e == null) compact();
+				loaded = true;
+			});
+		});
+	}
+
+	//everything was already converted into textures, sounds and the script, so the nbt is only needed to upload or save the avatar
+	//remote avatars drop it, and the host keeps it compressed, which is usually a fraction of its size
+	private void compact() {
+		if (Config.AVATAR_MEMORY_MODE.asInt() == 0 || nbt == null)
+			return;
+
+		if (isHost && compressedNbt == null) {
+			compressedNbt = getCompressedNbt();
+			if (compressedNbt == null)
+				return;
+			if (fileSize < 0)
+				fileSize = compressedNbt.length;
+		}
+
+		getFileSize(); //while the nbt is still here, if not known yet
+		nbt = null;
+	}
+
+	//if the avatar was loaded with data, even if it is no longer kept
+	public boolean hasData() {
+		return hasData;
+	}
+
+	//the avatar nbt, decompressing it again if it was compacted, or null if it was not kept
+	public CompoundTag getNbt() {
+		CompoundTag nbt = this.nbt;
+		if (nbt != null || compressedNbt == null)
+			return nbt;
+
+		try {
+			return NbtIo.readCompressed(new ByteArrayInputStream(compressedNbt));
+		} catch (Exception e) {
+			FiguraMod.LOGGER.error("Failed to read avatar " + this.name, e);
+			return null;
+		}
+	}
+
+	//the compressed nbt, as it is uploaded, or null if it was not kept
+	public byte[] getCompressedNbt() {
+		if (compressedNbt != null)
+			return compressedNbt;
+
+		CompoundTag nbt = this.nbt;
+		if (nbt == null)
+			return null;
+
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			NbtIo.writeCompressed(nbt, baos);
+			return baos.toByteArray();
+		} catch (Exception e) {
+			FiguraMod.LOGGER.error("Failed to compress avatar " + this.name, e);
+			return null;
+		}
+	}
+
+	//how much memory the kept avatar data uses, the nbt is measured as its uncompressed size
+	public long getRetainedBytes() {
+		if (compressedNbt != null)
+			return compressedNbt.length;
+
+		CompoundTag nbt = this.nbt;
+		if (nbt == null)
+			return 0;
+
+		try {
+			CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+			NbtIo.write(nbt, new DataOutputStream(out));
+			return out.getCount();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	private synchronized void completeStage(Stage stage) {
+		loadedStages |= 1 << stage.ordinal();
+	}
+
+	private synchronized void resetStage(Stage stage) {
+		loadedStages &= ~(1 << stage.ordinal());
+	}
+
+	// -- hot reload -- //
+
+	//replaces only the scripts and textures that changed, keeping the models, sounds and everything else
+	//returns false, changing nothing, when anything else changed and the avatar needs to be fully loaded again
+	public boolean hotReload(CompoundTag newNbt) {
+		if (!loaded || !isLoaded(Stage.SCRIPT) || !(renderer instanceof ImmediateAvatarRenderer immediate))
+			return false;
+
+		CompoundTag oldNbt = getNbt();
+		if (oldNbt == null)
+			return false;
+
+		Set<String> keys = new HashSet<>(oldNbt.getAllKeys());
+		keys.addAll(newNbt.getAllKeys());
+		for (String key : keys)
+			if (!key.equals("scripts") && !key.equals("textures") && !Objects.equals(oldNbt.get(key), newNbt.get(key)))
+				return false;
+
+		ListTag oldTextures = oldNbt.getList("textures", Tag.TAG_COMPOUND);
+		ListTag newTextures = newNbt.getList("textures", Tag.TAG_COMPOUND);
+		if (!oldTextures.equals(newTextures) && !immediate.reloadTextures(oldTextures, newTextures))
+			return false;
+
+		//the new data is what gets uploaded now
+		boolean scripts = !Objects.equals(oldNbt.get("scripts"), newNbt.get("scripts"));
+		nbt = newNbt;
+		compressedNbt = null;
+		fileSize = -1;
+
+		if (scripts)
+			reloadScript();
+		else
+			compact();
+
+		return true;
+	}
+
+	private void reloadScript() {
+		//undo what the previous script did
+		resetStage(Stage.SCRIPT);
+		luaRuntime = null;
+		scriptError = false;
+
+		SoundAPI.getSoundEngine().figura$stopSound(owner, null);
+		resetAnimations();
+		if (renderer != null && renderer.root != null)
+			renderer.root.restoreDefaults();
+		variables = new AvatarVariables();
+
+		color = null;
+		loadMetadata();
+
+		loaded = false;
+		loadTask = AvatarLoadPipeline.submit(task -> task.supply(Stage.SCRIPT, () -> {
 			try {
-				loadCustomSounds();
 				createLuaRuntime();
 			} catch (Exception e) {
 				FiguraMod.LOGGER.error("", e);
 			}
-
+			completeStage(Stage.SCRIPT);
+			return null;
+		}).whenComplete((v, e) -> {
+			if (e == null) compact();
 			loaded = true;
-		});
+		}));
+	}
+
+	public boolean isLoaded(Stage stage) {
+		return (loadedStages & 1 << stage.ordinal()) != 0;
+	}
+
+	private void loadMetadata() {
+		try {
+			CompoundTag metadata = nbt.getCompound("metadata");
+			name = metadata.getString("name");
+			authors = metadata.getString("authors");
+			version = metadata.getString("ver");
+			if (metadata.contains("color")) color = metadata.getString("color");
+			versionStatus = checkVersion();
+			if (entityName == null) entityName = name;
+		} catch (Exception e) {
+			FiguraMod.LOGGER.error("", e);
+		}
+	}
+
+	//the renderer is only kept if the avatar was not cleared while it was being built
+	private synchronized void setRenderer(AvatarLoadPipeline.Task task, AvatarRenderer renderer) {
+		if (task.isCancelled())
+			renderer.invalidate();
+		else
+			this.renderer = renderer;
 	}
 
 	private void checkUser() {
@@ -186,7 +445,7 @@ public class Avatar {
 	}
 
 	public void tick() {
-		if (scriptError || luaRuntime == null) return;
+		if (scriptError || luaRuntime == null || !isLoaded(Stage.SCRIPT)) return;
 
 		checkUser();
 
@@ -204,43 +463,73 @@ public class Avatar {
 	}
 
 	public void runPing(int id, byte[] data) {
-		if (scriptError || luaRuntime == null) return;
+		if (scriptError || luaRuntime == null || luaRuntime.ping == null || !isLoaded(Stage.SCRIPT)) return;
 
-		Varargs args = PingArg.fromByteArray(data, this);
-		String name = luaRuntime.ping.getName(id);
-		PingFunction function = luaRuntime.ping.get(name);
-		if (args == null || function == null) return;
+		Varargs args;
+		String name;
+		PingFunction function;
+		try {
+			args = PingArg.fromByteArray(data, this);
+			name = luaRuntime.ping.getName(id);
+			function = luaRuntime.ping.get(name);
+			if (args == null || function == null) return;
+
+			args = function.receive(args);
+			if (args == null) return;
+		} catch (Exception e) {
+			FiguraMod.LOGGER.warn("Failed to read ping " + id + " of " + owner, e);
+			return;
+		}
 
 		FiguraLuaPrinter.sendPingMessage(this, name, data.length, args);
-		function.func.invoke(args);
+
+		//same error handling as the events, so a broken ping stops the script instead of crashing the game
+		tryCall(function.func, -1, -1, args);
 	}
 
 	// -- script events -- //
 
 	//Calling with maxInstructions as -1 will not set the max instructions, and instead keep them as they are.
+	//Calling with maxTime as -1 will only measure the time, in nanoseconds, without limiting it.
 	//returns whatever if it succeeded or not calling the function
-	public void tryCall(Object toRun, int maxInstructions, Object... args) {
-		if (scriptError || luaRuntime == null || UIHelper.paperdoll) return;
+	public void tryCall(Object toRun, int maxInstructions, int maxTime, Object... args) {
+		if (scriptError || luaRuntime == null || UIHelper.paperdoll || !isLoaded(Stage.SCRIPT)) return;
+
+		//no need to convert the arguments when there is nothing to call
+		Varargs val = toRun instanceof LuaEvent event && event.isEmpty() ? LuaValue.NONE : switch (args.length) {
+			case 0 -> LuaValue.NONE;
+			case 1 -> luaRuntime.typeManager.javaToLua(args[0]);
+			case 2 -> LuaValue.varargsOf(luaRuntime.typeManager.javaToLua(args[0]), luaRuntime.typeManager.javaToLua(args[1]));
+			default -> {
+				LuaValue[] values = new LuaValue[args.length];
+				for (int i = 0; i < values.length; i++)
+					values[i] = luaRuntime.typeManager.javaToLua(args[i]);
+				yield LuaValue.varargsOf(values);
+			}
+		};
 
-		try {
-			Varargs val = switch (args.length) {
-				case 0 -> LuaValue.NONE;
-				case 1 -> luaRuntime.typeManager.javaToLua(args[0]);
-				case 2 -> LuaValue.varargsOf(luaRuntime.typeManager.javaToLua(args[0]), luaRuntime.typeManager.javaToLua(args[1]));
-				default -> {
-					LuaValue[] values = new LuaValue[args.length];
-					for (int i = 0; i < values.length; i++)
-						values[i] = luaRuntime.typeManager.javaToLua(args[i]);
-					yield LuaValue.varargsOf(values);
-				}
-			};
+		tryCall(toRun, maxInstructions, maxTime, val);
+	}
+
+	//same as above, but with the arguments already converted, used by the hot events to avoid allocations
+	public void tryCall(Object toRun, int maxInstructions, int maxTime, Varargs args) {
+		if (scriptError || luaRuntime == null || UIHelper.paperdoll || !isLoaded(Stage.SCRIPT)) return;
 
-			if (maxInstructions != -1) luaRuntime.setInstructionLimit(maxInstructions);
-			if (toRun instanceof LuaEvent event) event.call(val);
-			else if (toRun instanceof LuaFunction func) func.invoke(val);
-			else throw new LuaError("Invalid type to run!");
+		try {
+			FiguraLuaRuntime runtime = luaRuntime;
+			if (maxInstructions != -1) runtime.setInstructionLimit(maxInstructions);
+			runtime.setTimeLimit(maxTime);
+			if (toRun instanceof LuaEvent event) {
+				if (!event.isEmpty()) event.call(args);
+			} else if (toRun instanceof LuaFunction func) {
+				func.invoke(args);
+			} else {
+				throw new LuaError("Invalid type to run!");
+			}
+			runtime.endTimeLimit();
 		} catch (LuaError ex) {
-			FiguraLuaPrinter.sendLuaError(ex, entityName, owner);
+			//limit errors were already reported
+			if (!scriptError) FiguraLuaPrinter.sendLuaError(ex, entityName, owner);
 			scriptError = true;
 			luaRuntime = null;
 		}
@@ -249,7 +538,7 @@ public class Avatar {
 	public void entityInitEvent() {
 		if (scriptError || luaRuntime == null) return;
 
-		tryCall(luaRuntime.events.ENTITY_INIT, Math.max(initLimit - initInstructions, 1));
+		tryCall(luaRuntime.events.ENTITY_INIT, Math.max(initLimit - initInstructions, 1), -1, LuaValue.NONE);
 		if (luaRuntime != null) {
 			entityInitInstructions = luaRuntime.getInstructions();
 			accumulatedInitInstructions += entityInitInstructions;
@@ -260,9 +549,10 @@ public class Avatar {
 		if (scriptError || luaRuntime == null || luaRuntime.user == null) return;
 
 		int entityTickLimit = trust.get(TrustContainer.Trust.TICK_INST);
-		tryCall(luaRuntime.events.TICK, entityTickLimit);
+		tryCall(luaRuntime.events.TICK, entityTickLimit, trust.get(TrustContainer.Trust.TICK_TIME), LuaValue.NONE);
 		if (luaRuntime != null) {
 			entityTickInstructions = luaRuntime.getInstructions();
+			entityTickTime.add(luaRuntime.getTime());
 			accumulatedTickInstructions += entityTickInstructions;
 		}
 	}
@@ -271,9 +561,10 @@ public class Avatar {
 		if (scriptError || luaRuntime == null) return;
 
 		int worldTickLimit = trust.get(TrustContainer.Trust.WORLD_TICK_INST);
-		tryCall(luaRuntime.events.WORLD_TICK, worldTickLimit);
+		tryCall(luaRuntime.events.WORLD_TICK, worldTickLimit, trust.get(TrustContainer.Trust.TICK_TIME), LuaValue.NONE);
 		if (luaRuntime != null) {
 			worldTickInstructions = luaRuntime.getInstructions();
+			worldTickTime.add(luaRuntime.getTime());
 			accumulatedTickInstructions = worldTickInstructions;
 		}
 	}
@@ -282,9 +573,10 @@ public class Avatar {
 		if (scriptError || luaRuntime == null || luaRuntime.user == null) return;
 
 		int entityRenderLimit = trust.get(TrustContainer.Trust.RENDER_INST);
-		tryCall(luaRuntime.events.RENDER, entityRenderLimit, delta);
+		tryCall(luaRuntime.events.RENDER, entityRenderLimit, trust.get(TrustContainer.Trust.RENDER_TIME), deltaToLua(delta));
 		if (luaRuntime != null) {
 			entityRenderInstructions = luaRuntime.getInstructions();
+			entityRenderTime.add(luaRuntime.getTime());
 			accumulatedEntityRenderInstructions = entityRenderInstructions;
 		}
 	}
@@ -292,9 +584,10 @@ public class Avatar {
 	public void postRenderEvent(float delta) {
 		if (scriptError || luaRuntime == null) return;
 
-		tryCall(luaRuntime.events.POST_RENDER, -1, delta);
+		tryCall(luaRuntime.events.POST_RENDER, -1, getRemainingTime(entityRenderTime), deltaToLua(delta));
 		if (luaRuntime != null) {
 			postEntityRenderInstructions = luaRuntime.getInstructions() - entityRenderInstructions;
+			postEntityRenderTime.add(luaRuntime.getTime());
 			accumulatedEntityRenderInstructions += postEntityRenderInstructions;
 		}
 	}
@@ -303,9 +596,10 @@ public class Avatar {
 		if (scriptError || luaRuntime == null) return;
 
 		worldRenderLimit = trust.get(TrustContainer.Trust.WORLD_RENDER_INST);
-		tryCall(luaRuntime.events.WORLD_RENDER, worldRenderLimit, delta);
+		tryCall(luaRuntime.events.WORLD_RENDER, worldRenderLimit, trust.get(TrustContainer.Trust.RENDER_TIME), deltaToLua(delta));
 		if (luaRuntime != null) {
 			worldRenderInstructions = luaRuntime.getInstructions();
+			worldRenderTime.add(luaRuntime.getTime());
 			accumulatedWorldRenderInstructions = worldRenderInstructions;
 		}
 	}
@@ -315,13 +609,30 @@ public class Avatar {
 
 		if (scriptError || luaRuntime == null || worldRenderLimit == 0) return;
 
-		tryCall(luaRuntime.events.POST_WORLD_RENDER, Math.max(worldRenderLimit - worldRenderInstructions, 1), delta);
+		tryCall(luaRuntime.events.POST_WORLD_RENDER, Math.max(worldRenderLimit - worldRenderInstructions, 1), getRemainingTime(worldRenderTime), deltaToLua(delta));
 		if (luaRuntime != null) {
 			postWorldRenderInstructions = luaRuntime.getInstructions();
+			postWorldRenderTime.add(luaRuntime.getTime());
 			accumulatedWorldRenderInstructions += postWorldRenderInstructions;
 		}
 	}
 
+	//the same tick delta is sent to several render events in a frame, so reuse its lua value
+	private LuaValue deltaToLua(float delta) {
+		if (delta != lastDelta) {
+			lastDelta = delta;
+			lastDeltaValue = LuaValue.valueOf(delta);
+		}
+		return lastDeltaValue;
+	}
+
+	//the post events share the time budget with their main event, so give them what is left of it
+	private int getRemainingTime(RollingAverage mainEvent) {
+		int limit = trust.get(TrustContainer.Trust.RENDER_TIME);
+		if (limit == Integer.MAX_VALUE) return -1;
+		return (int) Math.max(limit - mainEvent.getLast() / 1_000_000L, 0L);
+	}
+
 	public String chatSendMessageEvent(String message) {
 		if (!scriptError && luaRuntime != null) {
 			try {
@@ -329,7 +640,7 @@ public class Avatar {
 				LuaValue value = result.arg(1);
 				return value.isnil() ? null : Config.CHAT_MESSAGES.asBool() ? value.tojstring() : message;
 			} catch (LuaError ex) {
-				FiguraLuaPrinter.sendLuaError(ex, entityName, owner);
+				if (!scriptError) FiguraLuaPrinter.sendLuaError(ex, entityName, owner);
 				scriptError = true;
 				luaRuntime = null;
 			}
@@ -338,16 +649,16 @@ public class Avatar {
 	}
 
 	public void chatReceivedMessageEvent(String message) {
-		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.CHAT_RECEIVE_MESSAGE, -1, message);
+		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.CHAT_RECEIVE_MESSAGE, -1, -1, message);
 	}
 
 	public void handleCustomEvent(String id) {
-		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.CUSTOM_EVENT, -1, id);
+		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.CUSTOM_EVENT, -1, -1, id);
 	}
 
 	public void skullRenderEvent(SkullBlockEntity skullBlockEntity, float delta) {
 		if (scriptError || luaRuntime == null || renderer == null || !renderer.allowSkullRendering) return;
-		tryCall(luaRuntime.events.SKULL_RENDER, -1, delta, FiguraVec3.fromBlockPos(skullBlockEntity.getBlockPos()));
+		tryCall(luaRuntime.events.SKULL_RENDER, -1, -1, delta, FiguraVec3.fromBlockPos(skullBlockEntity.getBlockPos()));
 		if (luaRuntime != null) {
 			postEntityRenderInstructions = luaRuntime.getInstructions();
 			accumulatedEntityRenderInstructions = postEntityRenderInstructions + entityRenderInstructions;
@@ -355,15 +666,15 @@ public class Avatar {
 	}
 
 	public void mouseScrollEvent(double delta) {
-		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.MOUSE_SCROLL, -1, delta);
+		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.MOUSE_SCROLL, -1, -1, delta);
 	}
 
 	public void previewRenderEvent(String renderMode) {
-		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.PREVIEW_RENDER, trust.get(TrustContainer.Trust.RENDER_INST), renderMode);
+		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.PREVIEW_RENDER, trust.get(TrustContainer.Trust.RENDER_INST), trust.get(TrustContainer.Trust.RENDER_TIME), renderMode);
 	}
 
 	public void postPreviewRenderEvent(String renderMode) {
-		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.POST_PREVIEW_RENDER, -1, renderMode);
+		if (!scriptError && luaRuntime != null) tryCall(luaRuntime.events.POST_PREVIEW_RENDER, -1, -1, renderMode);
 	}
 
 	// -- rendering events -- //
@@ -531,7 +842,7 @@ public class Avatar {
 
 		//hacky 2
 		stack.popPose();
-		return complexity > oldComplexity && luaRuntime != null && !luaRuntime.vanilla_model.HEAD.getVisible();
+		return complexity > oldComplexity && luaRuntime != null && luaRuntime.vanilla_model != null && !luaRuntime.vanilla_model.HEAD.getVisible();
 	}
 
 	private static final PartCustomization PIVOT_PART_RENDERING_CUSTOMIZATION = PartCustomization.of();
@@ -593,22 +904,32 @@ public class Avatar {
 	 * also closes and stops this avatar sounds
 	 */
 	public void clean() {
-		if (renderer != null) renderer.invalidate();
+		if (loadTask != null) loadTask.cancel();
+
+		synchronized (this) {
+			if (renderer != null) renderer.invalidate();
+		}
 
 		SoundAPI.getSoundEngine().figura$stopSound(owner, null);
-		for (SoundBuffer value : customSounds.values())
-			value.releaseAlBuffer();
+		for (CustomSound value : customSounds.values())
+			value.release();
 	}
 
-	private int getFileSize() {
+	//the compressed size is only calculated when it is not known from the loaded data, and only once
+	public int getFileSize() {
+		int size = fileSize;
+		CompoundTag nbt = this.nbt;
+		if (size >= 0 || nbt == null)
+			return Math.max(size, 0);
+
 		try {
-			//get size
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			NbtIo.writeCompressed(nbt, baos);
-			return baos.size();
+			//count the bytes without keeping them
+			CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+			NbtIo.writeCompressed(nbt, out);
+			return fileSize = (int) out.getCount();
 		} catch (Exception e) {
 			FiguraMod.LOGGER.warn("Failed to generate file size for model " + this.name, e);
-			return 0;
+			return fileSize = 0;
 		}
 	}
 
@@ -657,27 +978,45 @@ public class Avatar {
 		ListTag root = nbt.getList("animations", Tag.TAG_COMPOUND);
 		for (int i = 0; i < root.size(); i++) {
 			try {
-				CompoundTag animNbt = root.getCompound(i);
+				Animation animation = readAnimation(root.getCompound(i));
+				if (animation != null) animations.put(i, animation);
+			} catch (Exception ignored) {
+			}
+		}
+	}
 
-				if (!animNbt.contains("mdl") || !animNbt.contains("name")) continue;
+	//rebuilds the animations from the nbt, dropping what the previous script changed, but keeping the keyframes of the model parts
+	private void resetAnimations() {
+		ListTag root = nbt.getList("animations", Tag.TAG_COMPOUND);
+		for (Map.Entry<Integer, Animation> entry : animations.entrySet()) {
+			entry.getValue().stop();
+			try {
+				Animation animation = readAnimation(root.getCompound(entry.getKey()));
+				if (animation == null) continue;
+				animation.copyKeyframes(entry.getValue());
+				entry.setValue(animation);
+			} catch (Exception ignored) {
+			}
+		}
+	}
 
-				Animation animation = new Animation(this, animNbt.getString("mdl"), animNbt.getString("name"),
-						animNbt.contains("loop") ? Animation.LoopMode.valueOf(animNbt.getString("loop").toUpperCase()) : Animation.LoopMode.ONCE,
-						animNbt.contains("ovr") && animNbt.getBoolean("ovr"), animNbt.contains("len") ? animNbt.getFloat("len") : 0f,
-						animNbt.contains("off") ? animNbt.getFloat("off") : 0f, animNbt.contains("bld") ? animNbt.getFloat("bld") : 1f,
-						animNbt.contains("sdel") ? animNbt.getFloat("sdel") : 0f, animNbt.contains("ldel") ? animNbt.getFloat("ldel") : 0f);
+	private Animation readAnimation(CompoundTag animNbt) {
+		if (!animNbt.contains("mdl") || !animNbt.contains("name")) return null;
 
-				if (animNbt.contains("code")) {
-					for (Tag code : animNbt.getList("code", Tag.TAG_COMPOUND)) {
-						CompoundTag compound = (CompoundTag) code;
-						animation.addCode(compound.getFloat("time"), compound.getString("src"));
-					}
-				}
+		Animation animation = new Animation(this, animNbt.getString("mdl"), animNbt.getString("name"),
+				animNbt.contains("loop") ? Animation.LoopMode.valueOf(animNbt.getString("loop").toUpperCase()) : Animation.LoopMode.ONCE,
+				animNbt.contains("ovr") && animNbt.getBoolean("ovr"), animNbt.contains("len") ? animNbt.getFloat("len") : 0f,
+				animNbt.contains("off") ? animNbt.getFloat("off") : 0f, animNbt.contains("bld") ? animNbt.getFloat("bld") : 1f,
+				animNbt.contains("sdel") ? animNbt.getFloat("sdel") : 0f, animNbt.contains("ldel") ? animNbt.getFloat("ldel") : 0f);
 
-				animations.put(i, animation);
-			} catch (Exception ignored) {
+		if (animNbt.contains("code")) {
+			for (Tag code : animNbt.getList("code", Tag.TAG_COMPOUND)) {
+				CompoundTag compound = (CompoundTag) code;
+				animation.addCode(compound.getFloat("time"), compound.getString("src"));
 			}
 		}
+
+		return animation;
 	}
 
 	private void loadCustomSounds() {
@@ -693,10 +1032,9 @@ public class Avatar {
 		}
 	}
 
+	//sounds are only decoded when played
 	public void loadSound(String name, byte[] data) throws Exception {
-		try (ByteArrayInputStream inputStream = new ByteArrayInputStream(data); OggAudioStream oggAudioStream = new OggAudioStream(inputStream)) {
-			SoundBuffer sound = new SoundBuffer(oggAudioStream.readAll(), oggAudioStream.getFormat());
-			this.customSounds.put(name, sound);
-		}
+		CustomSound old = this.customSounds.put(name, new CustomSound(owner, name, data));
+		if (old != null) old.release();
 	}
 }
@@ -0,0 +1,138 @@
+package org.moon.figura.avatars;
+
+import org.moon.figura.FiguraMod;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the avatar loading work on a few small thread pools, one for each kind of work,
+ * so different avatars can be loaded at the same time, and the slow parts of one avatar do not hold the others.
+ * Only a limited amount of avatars are loaded at once, the others wait for their turn without holding any thread.
+ */
+public class AvatarLoadPipeline {
+
+    private static final int MAX_LOADING = 4;
+
+    private static final Queue<Task> WAITING = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger LOADING = new AtomicInteger();
+
+    public enum Stage {
+        DECODE(2),
+        TEXTURES(2),
+        MODEL(2),
+        SOUNDS(1),
+        SCRIPT(1);
+
+        private final ExecutorService executor;
+
+        Stage(int threads) {
+            AtomicInteger count = new AtomicInteger();
+            String name = FiguraMod.MOD_NAME + " Avatar " + name().charAt(0) + name().substring(1).toLowerCase() + " #";
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, name + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    //queues a new loading, the function receives the task and returns the future that completes when everything is done
+    public static Task submit(Function<Task, CompletableFuture<?>> loader) {
+        Task task = new Task(loader);
+        WAITING.add(task);
+        startNext();
+        return task;
+    }
+
+    private static void startNext() {
+        while (true) {
+            int loading = LOADING.get();
+            if (loading >= MAX_LOADING || WAITING.isEmpty())
+                return;
+            if (!LOADING.compareAndSet(loading, loading + 1))
+                continue;
+
+            //cancelled tasks still run their loader, their stages fail right away but their completion handlers still run
+            Task task = WAITING.poll();
+            if (task == null) {
+                LOADING.decrementAndGet();
+                continue;
+            }
+
+            CompletableFuture<?> future;
+            try {
+                future = task.loader.apply(task);
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            future.whenComplete((v, e) -> {
+                if (e != null && !(e instanceof CancellationException || e.getCause() instanceof CancellationException))
+                    FiguraMod.LOGGER.error("Failed to load avatar", e);
+
+                LOADING.decrementAndGet();
+                startNext();
+            });
+        }
+    }
+
+    public static int getLoading() {
+        return LOADING.get();
+    }
+
+    public static int getWaiting() {
+        return WAITING.size();
+    }
+
+    public static class Task {
+
+        private final Function<Task, CompletableFuture<?>> loader;
+        private volatile boolean cancelled;
+
+        private Task(Function<Task, CompletableFuture<?>> loader) {
+            this.loader = loader;
+        }
+
+        //runs the work on the given stage, skipping it when the task was cancelled
+        public <T> CompletableFuture<T> supply(Stage stage, Supplier<T> supplier) {
+            return CompletableFuture.supplyAsync(() -> {
+                checkCancelled();
+                return supplier.get();
+            }, stage.executor);
+        }
+
+        //runs the work on the given stage once the previous one is done
+        public <T, R> CompletableFuture<R> then(CompletableFuture<T> previous, Stage stage, Function<T, R> function) {
+            return previous.thenApplyAsync(value -> {
+                checkCancelled();
+                return function.apply(value);
+            }, stage.executor);
+        }
+
+        //same as above, but also runs when cancelled, so the function can release what the previous stage created
+        public <T, R> CompletableFuture<R> after(CompletableFuture<T> previous, Stage stage, Function<T, R> function) {
+            return previous.thenApplyAsync(function, stage.executor);
+        }
+
+        private void checkCancelled() {
+            if (cancelled)
+                throw new CancellationException();
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
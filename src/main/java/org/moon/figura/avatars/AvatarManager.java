@@ -4,6 +4,7 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.providers.LocalAvatarLoader;
 import org.moon.figura.backend.NetworkManager;
@@ -12,12 +13,15 @@ import org.moon.figura.gui.FiguraToast;
 import org.moon.figura.gui.widgets.lists.AvatarList;
 import org.moon.figura.utils.FiguraText;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Manages all the avatars that are currently loaded in memory, and also
@@ -142,6 +146,18 @@ public class AvatarManager {
         return null;
     }
 
+    //stop waiting for the avatars of players that left before they were downloaded, so they are fetched again when they come back
+    public static void onEntityUnload(Entity entity, Level level) {
+        UUID id = entity.getUUID();
+        if (!(entity instanceof Player) || FiguraMod.isLocal(id) || !NetworkManager.cancelAvatarDownload(id))
+            return;
+
+        Avatar avatar = LOADED_AVATARS.remove(id);
+        FETCHED_AVATARS.remove(id);
+        if (avatar != null)
+            avatar.clean();
+    }
+
     // -- avatar management -- //
 
     //removes an loaded avatar
@@ -193,7 +209,9 @@ public class AvatarManager {
         try {
             Avatar avatar = new Avatar(id);
             LOADED_AVATARS.put(id, avatar);
-            avatar.load(LocalAvatarLoader.loadAvatar(path));
+            //.moon files already are the compressed avatar, so their size is known
+            int fileSize = path != null && path.toString().endsWith(".moon") ? (int) Files.size(path) : -1;
+            avatar.load(LocalAvatarLoader.loadAvatar(path), fileSize);
             FiguraMod.LOGGER.debug("Loaded local avatar from " + path);
         } catch (Exception e) {
             FiguraMod.LOGGER.error("Failed to load avatar from " + path, e);
@@ -204,8 +222,44 @@ public class AvatarManager {
         localUploaded = false;
     }
 
+    //reload the local avatar after its files changed, only replacing the changed scripts and textures when possible
+    public static void hotReloadLocalAvatar(Path path) {
+        Avatar avatar = LOADED_AVATARS.get(FiguraMod.getLocalPlayerUUID());
+        if (avatar != null && path != null) {
+            try {
+                if (avatar.hotReload(LocalAvatarLoader.compileAvatar(path))) {
+                    localUploaded = false;
+                    FiguraMod.LOGGER.debug("Hot reloaded local avatar from " + path);
+                    return;
+                }
+            } catch (Exception e) {
+                FiguraMod.LOGGER.debug("Failed to hot reload avatar from " + path, e);
+            }
+        }
+
+        loadLocalAvatar(path);
+    }
+
     //set an user's avatar
     public static void setAvatar(UUID id, CompoundTag nbt) {
+        setAvatar(id, avatar -> avatar.load(nbt));
+    }
+
+    //same as above, but from the compressed nbt, which is decompressed by the load pipeline
+    public static void setAvatar(UUID id, byte[] data) {
+        setAvatar(id, data, null);
+    }
+
+    public static void setAvatar(UUID id, byte[] data, Runnable onDecodeFailure) {
+        setAvatar(id, avatar -> avatar.load(data, onDecodeFailure));
+    }
+
+    //same as above, but the data is read by the load pipeline too, like from the avatar cache
+    public static void setAvatar(UUID id, Supplier<byte[]> source, Runnable onDecodeFailure) {
+        setAvatar(id, avatar -> avatar.load(source, onDecodeFailure));
+    }
+
+    private static void setAvatar(UUID id, Consumer<Avatar> loader) {
         //remove local watch keys
         if (FiguraMod.isLocal(id)) {
             LocalAvatarLoader.resetWatchKeys();
@@ -215,8 +269,13 @@ public class AvatarManager {
 
         try {
             Avatar avatar = new Avatar(id);
-            LOADED_AVATARS.put(id, avatar);
-            avatar.load(nbt);
+            Avatar old = LOADED_AVATARS.put(id, avatar);
+
+            //stop loading the previous avatar, if it still is
+            if (old != null && !old.loaded)
+                old.clean();
+
+            loader.accept(avatar);
             FiguraMod.LOGGER.debug("Set avatar for " + id);
         } catch (Exception e) {
             FiguraMod.LOGGER.error("Failed to set avatar for " + id, e);
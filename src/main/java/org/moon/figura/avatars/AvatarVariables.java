@@ -0,0 +1,127 @@
+package org.moon.figura.avatars;
+
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.moon.figura.FiguraMod;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Values an avatar shares with everyone else through avatar:store().
+ * Readers always get the same read only table, and can compare the version to know when anything changed,
+ * instead of rescanning the values every tick.
+ */
+public class AvatarVariables {
+
+    //shared between every store, so a reloaded avatar never repeats a version
+    private static final AtomicInteger LAST_VERSION = new AtomicInteger();
+
+    private static final Values EMPTY = new Values();
+    private static Values playerValues;
+    private static int playerValuesTick = -1;
+
+    private final Values values = new Values();
+    private int version, size;
+
+    public AvatarVariables() {
+        this.version = LAST_VERSION.incrementAndGet();
+    }
+
+    //returns false when there is no room left for a new key
+    public boolean store(String key, LuaValue value, int limit) {
+        LuaValue luaKey = LuaValue.valueOf(key);
+        boolean exists = !values.rawget(luaKey).isnil();
+
+        if (value.isnil()) {
+            if (!exists)
+                return true;
+            size--;
+        } else if (!exists) {
+            if (size >= limit)
+                return false;
+            size++;
+        }
+
+        values.put(luaKey, freeze(value, new IdentityHashMap<>()));
+        version = LAST_VERSION.incrementAndGet();
+        return true;
+    }
+
+    //tables are stored as read only copies, so changing them later has to go through store() again, bumping the version,
+    //and the avatars reading them can not write into the owner data
+    private static LuaValue freeze(LuaValue value, Map<LuaValue, Values> copies) {
+        if (!value.istable())
+            return value;
+
+        Values copy = copies.get(value);
+        if (copy != null)
+            return copy;
+
+        copy = new Values();
+        copies.put(value, copy);
+
+        LuaTable table = value.checktable();
+        for (Varargs n = table.next(LuaValue.NIL); !n.arg1().isnil(); n = table.next(n.arg1()))
+            copy.put(freeze(n.arg1(), copies), freeze(n.arg(2), copies));
+
+        return copy;
+    }
+
+    public LuaValue get(String key) {
+        return values.rawget(key);
+    }
+
+    public LuaTable getValues() {
+        return values;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    //read only table of the values of every player in the world, rebuilt at most once per tick
+    public static synchronized LuaTable getPlayerValues(Level level) {
+        if (playerValues == null || playerValuesTick != FiguraMod.ticks) {
+            Values table = new Values();
+            for (Player player : level.players()) {
+                Avatar avatar = AvatarManager.getAvatarForPlayer(player.getUUID());
+                table.put(LuaValue.valueOf(player.getName().getString()), avatar == null ? EMPTY : avatar.variables.values);
+            }
+            playerValues = table;
+            playerValuesTick = FiguraMod.ticks;
+        }
+        return playerValues;
+    }
+
+    //only the store itself can write to this table
+    private static class Values extends LuaTable {
+
+        private void put(LuaValue key, LuaValue value) {
+            super.rawset(key, value);
+        }
+
+        @Override
+        public LuaValue setmetatable(LuaValue metatable) {
+            return error("table is read-only");
+        }
+
+        @Override
+        public void rawset(int key, LuaValue value) {
+            error("table is read-only");
+        }
+
+        @Override
+        public void rawset(LuaValue key, LuaValue value) {
+            error("table is read-only");
+        }
+    }
+}
@@ -53,7 +53,7 @@ public class Badges {
             badges.append(Default.CHEESE.badge);
 
         //mark
-        else if (avatar.nbt != null) {
+        else if (avatar.hasData()) {
             mark: {
                 //pride (mark skins)
                 BitSet prideSet = pair.getFirst();
@@ -3,6 +3,8 @@ package org.moon.figura.avatars.model;
 import com.mojang.datafixers.util.Pair;
 import net.minecraft.client.renderer.LightTexture;
 import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
 import org.moon.figura.avatars.model.rendering.ImmediateAvatarRenderer;
 import org.moon.figura.avatars.model.rendering.texture.FiguraTextureSet;
 import org.moon.figura.avatars.model.rendering.texture.RenderTypes;
@@ -51,6 +53,10 @@ public class FiguraModelPart {
     public int animationOverride = 0;
     public int lastAnimationPriority = Integer.MIN_VALUE;
 
+    //the state before the script changed anything
+    private PartCustomization defaultCustomization;
+    private ParentType defaultParentType = ParentType.None;
+
     public final FiguraMat4 savedPartToWorldMat = FiguraMat4.of().scale(1d/16, 1d/16, 1d/16);
 
     public FiguraModelPart(String name, PartCustomization customization, List<FiguraModelPart> children) {
@@ -137,10 +143,36 @@ public class FiguraModelPart {
 
     public void clean() {
         customization.free();
+        if (defaultCustomization != null)
+            defaultCustomization.free();
         for (FiguraModelPart child : children)
             child.clean();
     }
 
+    //remembers the current state, so it can be restored when the script is reloaded
+    public void saveDefaults() {
+        if (defaultCustomization == null)
+            defaultCustomization = PartCustomization.of();
+        customization.copyTo(defaultCustomization);
+        defaultParentType = parentType;
+
+        for (FiguraModelPart child : children)
+            child.saveDefaults();
+    }
+
+    //undoes everything the script did to this part and its children
+    public void restoreDefaults() {
+        if (defaultCustomization != null) {
+            defaultCustomization.copyTo(customization);
+            customization.needsMatrixRecalculation = true;
+            parentType = defaultParentType;
+        }
+        renderTasks.clear();
+
+        for (FiguraModelPart child : children)
+            child.restoreDefaults();
+    }
+
     // -- animations -- //
 
     public void animPosition(FiguraVec3 vec, boolean merge) {
@@ -391,6 +423,42 @@ public class FiguraModelPart {
         return this.customization.getNormalMatrix();
     }
 
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = @LuaFunctionOverload(
+                    argumentTypes = {LuaTable.class, LuaTable.class},
+                    argumentNames = {"parts", "transforms"}
+            ),
+            value = "model_part.set_transforms"
+    )
+    public void setTransforms(@LuaNotNil LuaTable parts, @LuaNotNil LuaTable transforms) {
+        //9 values per part: position, rotation and scale
+        int count = parts.length();
+        int values = transforms.length();
+        if (values < count * 9)
+            throw new LuaError("Expected " + count * 9 + " transform values for " + count + " parts, but got " + values);
+
+        int j = 1;
+        for (int i = 1; i <= count; i++) {
+            PartCustomization part = getTransformTarget(parts.get(i)).customization;
+            part.setPos(transforms.get(j).checkdouble(), transforms.get(j + 1).checkdouble(), transforms.get(j + 2).checkdouble());
+            part.setRot(transforms.get(j + 3).checkdouble(), transforms.get(j + 4).checkdouble(), transforms.get(j + 5).checkdouble());
+            part.setScale(transforms.get(j + 6).checkdouble(), transforms.get(j + 7).checkdouble(), transforms.get(j + 8).checkdouble());
+            j += 9;
+        }
+    }
+
+    //parts can be given directly, or by the name of a child of this part
+    private FiguraModelPart getTransformTarget(LuaValue value) {
+        if (value.type() != LuaValue.TSTRING)
+            return (FiguraModelPart) value.checkuserdata(FiguraModelPart.class);
+
+        FiguraModelPart child = (FiguraModelPart) __index(value.tojstring());
+        if (child == null)
+            throw new LuaError("Part " + name + " has no child named " + value.tojstring());
+        return child;
+    }
+
     @LuaWhitelist
     @LuaMethodDoc(
             overloads = @LuaFunctionOverload(
@@ -329,30 +329,35 @@ public class PartCustomization implements CachedType<PartCustomization> {
         }
         @Override
         protected void copy(PartCustomization from, PartCustomization to) {
-            to.partType = from.partType;
-            to.positionMatrix.set(from.positionMatrix);
-            to.uvMatrix.set(from.uvMatrix);
-            to.normalMatrix.set(from.normalMatrix);
-            to.setPos(from.position);
-            to.setRot(from.rotation);
-            to.setScale(from.scale);
-            to.setPivot(from.pivot);
-            to.offsetPivot(from.offsetPivot);
-            to.offsetPos(from.offsetPos);
-            to.offsetRot(from.offsetRot);
-            to.color.set(from.color);
-            to.alpha = from.alpha;
-            to.light = from.light;
-            to.overlay = from.overlay;
-            to.needsMatrixRecalculation = from.needsMatrixRecalculation;
-            to.visible = from.visible;
-            to.setPrimaryRenderType(from.primaryRenderType);
-            to.setSecondaryRenderType(from.secondaryRenderType);
-            to.primaryTexture = from.primaryTexture;
-            to.secondaryTexture = from.secondaryTexture;
+            from.copyTo(to);
         }
     }
 
+    //copies everything from this customization into the other one
+    public void copyTo(PartCustomization to) {
+        to.partType = this.partType;
+        to.positionMatrix.set(this.positionMatrix);
+        to.uvMatrix.set(this.uvMatrix);
+        to.normalMatrix.set(this.normalMatrix);
+        to.setPos(this.position);
+        to.setRot(this.rotation);
+        to.setScale(this.scale);
+        to.setPivot(this.pivot);
+        to.offsetPivot(this.offsetPivot);
+        to.offsetPos(this.offsetPos);
+        to.offsetRot(this.offsetRot);
+        to.color.set(this.color);
+        to.alpha = this.alpha;
+        to.light = this.light;
+        to.overlay = this.overlay;
+        to.needsMatrixRecalculation = this.needsMatrixRecalculation;
+        to.visible = this.visible;
+        to.setPrimaryRenderType(this.primaryRenderType);
+        to.setSecondaryRenderType(this.secondaryRenderType);
+        to.primaryTexture = this.primaryTexture;
+        to.secondaryTexture = this.secondaryTexture;
+    }
+
     //Modify this object using the information contained in the other object
     private void modify(PartCustomization other) {
         positionMatrix.rightMultiply(other.positionMatrix);
@@ -24,45 +24,87 @@ import org.moon.figura.trust.TrustContainer;
 import org.moon.figura.utils.ColorUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class ImmediateAvatarRenderer extends AvatarRenderer {
 
     protected final List<FiguraImmediateBuffer> buffers = new ArrayList<>(0);
+    protected final List<FiguraTextureSet> textureSets;
     protected final PartCustomization.Stack customizationStack = new PartCustomization.Stack();
 
     public static final FiguraMat4 VIEW_TO_WORLD_MATRIX = FiguraMat4.of();
     private static final PartCustomization pivotOffsetter = PartCustomization.of();
 
-    public ImmediateAvatarRenderer(Avatar avatar) {
+    //textures are decoded separately, so the avatar loading can decode them in parallel with other work
+    public ImmediateAvatarRenderer(Avatar avatar, List<FiguraTextureSet> textureSets) {
         super(avatar);
+        this.textureSets = textureSets;
 
-        //Textures
+        //Vertex data, read model parts
+        List<FiguraImmediateBuffer.Builder> builders = new ArrayList<>();
+        root = FiguraModelPartReader.read(avatar, avatar.nbt.getCompound("models"), builders, textureSets);
+
+        for (int i = 0; i < textureSets.size() && i < builders.size(); i++)
+            buffers.add(builders.get(i).build(textureSets.get(i), customizationStack));
+
+        avatar.hasTexture = !textureSets.isEmpty();
+
+        //what the script resets to when it is reloaded, which only happens for the host
+        if (root != null && avatar.isHost)
+            root.saveDefaults();
+    }
+
+    public static List<FiguraTextureSet> readTextures(CompoundTag nbt) {
         List<FiguraTextureSet> textureSets = new ArrayList<>();
-        ListTag texturesList = avatar.nbt.getList("textures", Tag.TAG_COMPOUND);
-        for (int i = 0; i < texturesList.size(); i++) {
-            CompoundTag tag = texturesList.getCompound(i);
+        ListTag texturesList = nbt.getList("textures", Tag.TAG_COMPOUND);
+        for (int i = 0; i < texturesList.size(); i++)
+            textureSets.add(readTexture(texturesList.getCompound(i)));
 
-            String name = tag.getString("name");
+        return textureSets;
+    }
+
+    private static FiguraTextureSet readTexture(CompoundTag tag) {
+        String name = tag.getString("name");
 
-            byte[] mainData = tag.getByteArray("default");
-            mainData = mainData.length == 0 ? null : mainData;
+        byte[] mainData = tag.getByteArray("default");
+        mainData = mainData.length == 0 ? null : mainData;
 
-            byte[] emissiveData = tag.getByteArray("emissive");
-            emissiveData = emissiveData.length == 0 ? null : emissiveData;
+        byte[] emissiveData = tag.getByteArray("emissive");
+        emissiveData = emissiveData.length == 0 ? null : emissiveData;
 
-            textureSets.add(new FiguraTextureSet(name, mainData, emissiveData));
+        return new FiguraTextureSet(name, mainData, emissiveData);
+    }
+
+    //hot reload: replaces only the images of the textures that changed, keeping the model and its buffers
+    //returns false, changing nothing, when the new textures do not fit the current model
+    public boolean reloadTextures(ListTag oldTextures, ListTag newTextures) {
+        if (oldTextures.size() != textureSets.size() || newTextures.size() != textureSets.size())
+            return false;
+
+        Map<Integer, FiguraTextureSet> changed = new HashMap<>();
+        boolean matches = true;
+        for (int i = 0; i < textureSets.size() && matches; i++) {
+            CompoundTag tag = newTextures.getCompound(i);
+            if (tag.equals(oldTextures.getCompound(i)))
+                continue;
+
+            FiguraTextureSet set = readTexture(tag);
+            changed.put(i, set);
+            matches = textureSets.get(i).matches(set);
         }
 
-        //Vertex data, read model parts
-        List<FiguraImmediateBuffer.Builder> builders = new ArrayList<>();
-        root = FiguraModelPartReader.read(avatar, avatar.nbt.getCompound("models"), builders, textureSets);
+        if (!matches) {
+            changed.values().forEach(FiguraTextureSet::clean);
+            return false;
+        }
 
-        for (int i = 0; i < textureSets.size() && i < builders.size(); i++)
-            buffers.add(builders.get(i).build(textureSets.get(i), customizationStack));
+        for (Map.Entry<Integer, FiguraTextureSet> entry : changed.entrySet())
+            textureSets.get(entry.getKey()).replace(entry.getValue());
 
-        avatar.hasTexture = !texturesList.isEmpty();
+        return true;
     }
 
     @Override
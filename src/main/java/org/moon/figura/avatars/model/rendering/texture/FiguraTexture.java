@@ -69,6 +69,28 @@ public class FiguraTexture extends AbstractTexture implements Closeable {
         return nativeImage.getHeight();
     }
 
+    public static boolean sameSize(FiguraTexture a, FiguraTexture b) {
+        if (a == null || b == null)
+            return a == b;
+        return a.nativeImage != null && b.nativeImage != null && a.getWidth() == b.getWidth() && a.getHeight() == b.getHeight();
+    }
+
+    //takes the image of the other texture, which must have the same size, and uploads it again on the next render
+    public void replace(FiguraTexture other) {
+        if (isClosed) {
+            other.close();
+            return;
+        }
+
+        nativeImage.close();
+        nativeImage = other.nativeImage;
+        uploaded = false;
+
+        //the image is ours now
+        other.nativeImage = null;
+        other.isClosed = true;
+    }
+
     @Override
     public void close() {
         //Make sure it doesn't close twice (minecraft tries to close the texture when reloading textures
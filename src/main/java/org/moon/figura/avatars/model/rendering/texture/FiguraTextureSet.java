@@ -27,6 +27,19 @@ public class FiguraTextureSet {
             emissiveTex.close();
     }
 
+    //if the other set can replace this one without changing the model uvs
+    public boolean matches(FiguraTextureSet other) {
+        return name.equals(other.name) && FiguraTexture.sameSize(mainTex, other.mainTex) && FiguraTexture.sameSize(emissiveTex, other.emissiveTex);
+    }
+
+    //takes the images of the other set, see matches()
+    public void replace(FiguraTextureSet other) {
+        if (mainTex != null)
+            mainTex.replace(other.mainTex);
+        if (emissiveTex != null)
+            emissiveTex.replace(other.emissiveTex);
+    }
+
     public void uploadIfNeeded() {
         if (mainTex != null)
             mainTex.registerAndUpload();
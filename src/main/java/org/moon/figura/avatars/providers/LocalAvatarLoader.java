@@ -21,6 +21,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.function.BiFunction;
 import java.util.regex.Pattern;
 
@@ -30,9 +34,28 @@ import java.util.regex.Pattern;
  */
 public class LocalAvatarLoader {
 
+    //per file parsing of folder avatars, the files are merged back in the order they were found
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName(FiguraMod.MOD_NAME + " Avatar Compiler #" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+
+    //parsed files of the last loaded avatar, reused while their modified time and size stay the same
+    private static final Map<Path, CompiledFile> FILE_CACHE = new ConcurrentHashMap<>();
+    private record CompiledFile(long modified, long size, Object data) {}
+
+    private interface FileCompiler<T> {
+        T compile(File file) throws IOException;
+    }
+
+    private static final int RELOAD_DELAY = 5; //ticks
+
     private static WatchService watcher;
     private static final HashMap<Path, WatchKey> KEYS = new HashMap<>();
     private static Path lastLoadedPath;
+    private static int reloadDelay;
+    private static boolean fullReload;
 
     public static CompoundTag cheese;
     public static final ArrayList<CompoundTag> SERVER_AVATARS = new ArrayList<>();
@@ -76,33 +99,53 @@ public class LocalAvatarLoader {
         lastLoadedPath = path;
         addWatchKey(path);
 
-        if (path == null)
+        if (path == null) {
+            FILE_CACHE.clear();
             return null;
+        }
 
         //load as nbt (.moon)
         if (path.toString().endsWith(".moon")) {
+            FILE_CACHE.clear();
             //NbtIo already closes the file stream
             return NbtIo.readCompressed(new FileInputStream(path.toFile()));
         }
 
         //load as folder
+        return compileAvatar(path);
+    }
+
+    /**
+     * Builds the avatar NbtCompound from a folder, without watching it
+     * @param path - the avatar folder
+     * @return the NbtCompound of this folder
+     */
+    public static CompoundTag compileAvatar(Path path) throws IOException {
         CompoundTag nbt = new CompoundTag();
 
         //Load metadata first!
         String metadata = IOUtils.readFile(path.resolve("avatar.json").toFile());
         nbt.put("metadata", AvatarMetadataParser.parse(metadata, path.getFileName().toString()));
 
+        Set<Path> used = new HashSet<>();
+
         //scripts
-        loadScripts(path, nbt);
+        loadScripts(path, nbt, used);
 
         //custom sounds
-        loadSounds(path, nbt);
+        loadSounds(path, nbt, used);
 
         ListTag textures = new ListTag();
         ListTag animations = new ListTag();
-        BlockbenchModelParser parser = new BlockbenchModelParser();
 
-        CompoundTag models = loadModels(path, parser, textures, animations);
+        List<File> modelFiles = new ArrayList<>();
+        collectModels(path, modelFiles);
+        Map<File, BlockbenchModelParser.ModelData> parsed = compileFiles(modelFiles, used, file -> {
+            String name = file.getName();
+            return new BlockbenchModelParser().parseModel(IOUtils.readFile(file), name.substring(0, name.length() - 8));
+        });
+
+        CompoundTag models = loadModels(path, parsed, textures, animations);
         models.putString("name", "models");
 
         AvatarMetadataParser.injectToModels(metadata, models);
@@ -115,51 +158,68 @@ public class LocalAvatarLoader {
         if (!animations.isEmpty())
             nbt.put("animations", animations);
 
+        //forget the files that are no longer part of the avatar
+        FILE_CACHE.keySet().retainAll(used);
+
         return nbt;
     }
 
-    private static void loadScripts(Path path, CompoundTag nbt) throws IOException {
+    private static void loadScripts(Path path, CompoundTag nbt, Set<Path> used) throws IOException {
         List<File> scripts = IOUtils.getFilesByExtension(path, ".lua");
         if (scripts.size() > 0) {
+            Map<File, byte[]> compiled = compileFiles(scripts, used, file -> IOUtils.readFile(file).getBytes(StandardCharsets.UTF_8));
             CompoundTag scriptsNbt = new CompoundTag();
             String pathRegex = Pattern.quote(path + File.separator);
             for (File script : scripts) {
                 String pathStr = script.toPath().toString();
                 String name = pathStr.replaceFirst(pathRegex, "");
                 name = name.replace(File.separatorChar, '/');
-                scriptsNbt.put(name.substring(0, name.length() - 4), new ByteArrayTag(IOUtils.readFile(script).getBytes(StandardCharsets.UTF_8)));
+                scriptsNbt.put(name.substring(0, name.length() - 4), new ByteArrayTag(compiled.get(script)));
             }
 
             nbt.put("scripts", scriptsNbt);
         }
     }
 
-    private static void loadSounds(Path path, CompoundTag nbt) throws IOException {
+    private static void loadSounds(Path path, CompoundTag nbt, Set<Path> used) throws IOException {
         List<File> sounds = IOUtils.getFilesByExtension(path, ".ogg");
         if (sounds.size() > 0) {
+            Map<File, byte[]> compiled = compileFiles(sounds, used, IOUtils::readFileBytes);
             CompoundTag soundsNbt = new CompoundTag();
             for (File sound : sounds) {
                 String name = sound.getName();
-                soundsNbt.putByteArray(name.substring(0, name.length() - 4), IOUtils.readFileBytes(sound));
+                soundsNbt.putByteArray(name.substring(0, name.length() - 4), compiled.get(sound));
             }
             nbt.put("sounds", soundsNbt);
         }
     }
 
-    private static CompoundTag loadModels(Path path, BlockbenchModelParser parser, ListTag textures, ListTag animations) throws IOException {
+    private static void collectModels(Path path, List<File> result) {
+        File[] subFiles = path.toFile().listFiles(f -> !f.isHidden() && !f.getName().startsWith("."));
+        if (subFiles != null)
+            for (File file : subFiles) {
+                if (file.isDirectory())
+                    collectModels(file.toPath(), result);
+                else if (file.toString().toLowerCase().endsWith(".bbmodel"))
+                    result.add(file);
+            }
+    }
+
+    //the parsed models are merged here, in order, so their texture and animation ids are always the same
+    private static CompoundTag loadModels(Path path, Map<File, BlockbenchModelParser.ModelData> parsed, ListTag textures, ListTag animations) {
         CompoundTag result = new CompoundTag();
         File[] subFiles = path.toFile().listFiles(f -> !f.isHidden() && !f.getName().startsWith("."));
         ListTag children = new ListTag();
         if (subFiles != null)
             for (File file : subFiles) {
                 if (file.isDirectory()) {
-                    CompoundTag subfolder = loadModels(file.toPath(), parser, textures, animations);
+                    CompoundTag subfolder = loadModels(file.toPath(), parsed, textures, animations);
                     if (!subfolder.isEmpty()) {
                         subfolder.putString("name", file.getName());
                         children.add(subfolder);
                     }
-                } else if (file.toString().toLowerCase().endsWith(".bbmodel")) {
-                    BlockbenchModelParser.ModelData data = parser.parseModel(IOUtils.readFile(file), file.getName().substring(0, file.getName().length() - 8));
+                } else if (parsed.containsKey(file)) {
+                    BlockbenchModelParser.ModelData data = BlockbenchModelParser.withOffsets(parsed.get(file), textures.size(), animations.size());
                     children.add(data.modelNbt());
                     textures.addAll(data.textureList());
                     animations.addAll(data.animationList());
@@ -172,6 +232,44 @@ public class LocalAvatarLoader {
         return result;
     }
 
+    //parses the files in parallel, skipping the ones that did not change since the last time
+    private static <T> Map<File, T> compileFiles(List<File> files, Set<Path> used, FileCompiler<T> compiler) throws IOException {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(files.size());
+        for (File file : files) {
+            used.add(file.toPath());
+            tasks.add(POOL.submit(() -> compileCached(file, compiler)));
+        }
+
+        Map<File, T> result = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                result.put(files.get(i), tasks.get(i).join());
+            } catch (RuntimeException e) {
+                for (Throwable t = e; t != null; t = t.getCause())
+                    if (t instanceof IOException io)
+                        throw io;
+                throw e;
+            }
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T compileCached(File file, FileCompiler<T> compiler) throws IOException {
+        Path path = file.toPath();
+        long modified = file.lastModified();
+        long size = file.length();
+
+        CompiledFile cached = FILE_CACHE.get(path);
+        if (cached != null && cached.modified == modified && cached.size == size)
+            return (T) cached.data;
+
+        T data = compiler.compile(file);
+        FILE_CACHE.put(path, new CompiledFile(modified, size, data));
+        return data;
+    }
+
     /**
      * Saves the loaded NBT into a folder inside the avatar list
      */
@@ -188,45 +286,63 @@ public class LocalAvatarLoader {
 
     /**
      * Tick the watched key for hotswapping avatars
+     * editors save in bursts, so the reload only happens once the files stop changing for a few ticks
      */
     public static void tickWatchedKey() {
-        WatchEvent<?> event = null;
-        boolean reload = false;
+        boolean changed = false;
 
         for (Map.Entry<Path, WatchKey> entry : KEYS.entrySet()) {
             WatchKey key = entry.getValue();
             if (!key.isValid())
                 continue;
 
-            for (WatchEvent<?> watchEvent : key.pollEvents()) {
-                if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW)
+            for (WatchEvent<?> event : key.pollEvents()) {
+                //events were lost, so we cannot know what changed
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    fullReload = changed = true;
                     continue;
+                }
 
-                event = watchEvent;
                 File file = entry.getKey().resolve(((WatchEvent<Path>) event).context()).toFile();
                 String name = file.getName();
 
                 if (file.isHidden() || name.startsWith(".") || (!file.isDirectory() && !name.matches("(.*(\\.lua|\\.bbmodel|\\.ogg|\\.png)$|avatar\\.json)")))
                     continue;
 
-                reload = true;
-                break;
+                //scripts, models and textures can be reloaded in place, if only the scripts or textures really changed
+                //new folders need to be watched, and the rest are only read on a full load
+                if (file.isDirectory() || !name.matches(".*(\\.lua|\\.bbmodel|\\.png)$"))
+                    fullReload = true;
+
+                FiguraMod.LOGGER.debug("Local avatar file changed: " + file);
+                changed = true;
             }
+        }
 
-            if (reload)
-                break;
+        if (changed) {
+            reloadDelay = RELOAD_DELAY;
+            return;
         }
 
+        if (reloadDelay <= 0 || --reloadDelay > 0)
+            return;
+
         //reload avatar
-        if (reload) {
+        if (fullReload) {
             FiguraMod.LOGGER.debug("Local avatar files changed - Reloading!");
-            FiguraMod.LOGGER.debug(event.context().toString());
             AvatarManager.loadLocalAvatar(lastLoadedPath);
+        } else {
+            FiguraMod.LOGGER.debug("Local avatar files changed - Hot reloading!");
+            AvatarManager.hotReloadLocalAvatar(lastLoadedPath);
         }
+
+        fullReload = false;
     }
 
     public static void resetWatchKeys() {
         lastLoadedPath = null;
+        reloadDelay = 0;
+        fullReload = false;
         for (WatchKey key : KEYS.values())
             key.cancel();
         KEYS.clear();
@@ -0,0 +1,198 @@
+package org.moon.figura.backend;
+
+import org.moon.figura.FiguraMod;
+import org.moon.figura.config.Config;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the last downloaded avatar of each player on disk, named by their owner and the sha-256 of the compressed data.
+ * The hash is sent with the download request, so the backend can answer that our copy is still up to date instead of sending the whole avatar again.
+ * The folder is limited by size, removing the least recently used avatars first.
+ */
+public class AvatarCache {
+
+    private static final String EXTENSION = ".nbt";
+    private static final Map<UUID, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static volatile boolean indexed;
+    private static final AtomicBoolean INDEXING = new AtomicBoolean();
+
+    private static final AtomicInteger HITS = new AtomicInteger(), MISSES = new AtomicInteger();
+
+    private record Entry(String hash, Path path) {}
+
+    private static Path getDirectory() {
+        Path p = FiguraMod.getCacheDirectory().resolve("avatars");
+        try {
+            Files.createDirectories(p);
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("Failed to create avatar cache directory", e);
+        }
+
+        return p;
+    }
+
+    //read the files already on disk, only once
+    private static synchronized void index() {
+        if (indexed)
+            return;
+
+        indexed = true;
+        File[] files = getDirectory().toFile().listFiles();
+        if (files == null)
+            return;
+
+        //newest first, so older copies of the same owner are removed
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        for (File file : files) {
+            String name = file.getName();
+            String[] split = name.substring(0, Math.max(name.length() - EXTENSION.length(), 0)).split("_", 2);
+            try {
+                UUID owner = UUID.fromString(split[0]);
+                if (!name.endsWith(EXTENSION) || split.length < 2 || ENTRIES.containsKey(owner))
+                    throw new Exception();
+                ENTRIES.put(owner, new Entry(split[1], file.toPath()));
+            } catch (Exception ignored) {
+                file.delete();
+            }
+        }
+    }
+
+    public static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    //hash of the cached avatar of this owner, or null if there is none
+    //called on the main thread, so it never waits for the folder to be listed, those requests just download the whole avatar
+    public static String getHash(UUID owner) {
+        if (!indexed) {
+            if (INDEXING.compareAndSet(false, true))
+                CompletableFuture.runAsync(AvatarCache::index);
+            return null;
+        }
+
+        Entry entry = ENTRIES.get(owner);
+        return entry == null ? null : entry.hash;
+    }
+
+    //reads the cached avatar, returning null when it is missing, or when it or its content does not match the given hash
+    //ran by the load pipeline, not holding the lock, so it never waits for the cache writes
+    public static byte[] read(UUID owner, String hash) {
+        index();
+        Entry entry = ENTRIES.get(owner);
+        if (entry == null || (hash != null && !hash.equals(entry.hash))) {
+            MISSES.incrementAndGet();
+            return null;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(entry.path);
+
+            //the file could have been corrupted or edited since it was written
+            if (!entry.hash.equals(hash(data))) {
+                FiguraMod.LOGGER.warn("Cached avatar of " + owner + " does not match its hash");
+                remove(owner);
+                MISSES.incrementAndGet();
+                return null;
+            }
+
+            entry.path.toFile().setLastModified(System.currentTimeMillis());
+            HITS.incrementAndGet();
+            return data;
+        } catch (Exception e) {
+            FiguraMod.LOGGER.warn("Failed to read cached avatar of " + owner, e);
+            remove(owner);
+            MISSES.incrementAndGet();
+            return null;
+        }
+    }
+
+    //saves a downloaded avatar, replacing the previous one of this owner
+    public static void store(UUID owner, byte[] data) {
+        CompletableFuture.runAsync(() -> write(owner, data));
+    }
+
+    private static synchronized void write(UUID owner, byte[] data) {
+        index();
+        String hash = hash(data);
+        if (hash == null)
+            return;
+
+        Entry old = ENTRIES.get(owner);
+        if (old != null && old.hash.equals(hash)) {
+            old.path.toFile().setLastModified(System.currentTimeMillis());
+            return;
+        }
+
+        try {
+            //written to a temporary file first, so a crash never leaves a partial avatar under the final name
+            Path path = getDirectory().resolve(owner + "_" + hash + EXTENSION);
+            Path temp = Files.createTempFile(path.getParent(), owner.toString(), ".tmp");
+            try {
+                Files.write(temp, data);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            ENTRIES.put(owner, new Entry(hash, path));
+            if (old != null)
+                Files.deleteIfExists(old.path);
+        } catch (Exception e) {
+            FiguraMod.LOGGER.warn("Failed to cache avatar of " + owner, e);
+            return;
+        }
+
+        evict();
+    }
+
+    public static synchronized void remove(UUID owner) {
+        Entry entry = ENTRIES.remove(owner);
+        if (entry != null)
+            entry.path.toFile().delete();
+    }
+
+    public static int getHits() {
+        return HITS.get();
+    }
+
+    public static int getMisses() {
+        return MISSES.get();
+    }
+
+    //removes the least recently used avatars until the folder fits the configured size
+    private static void evict() {
+        long limit = Config.AVATAR_CACHE_SIZE.asInt() * 1024L * 1024L;
+        File[] files = getDirectory().toFile().listFiles();
+        if (files == null)
+            return;
+
+        long size = 0;
+        for (File file : files)
+            size += file.length();
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && size > limit; i++) {
+            File file = files[i];
+            size -= file.length();
+            file.delete();
+            ENTRIES.values().removeIf(entry -> entry.path.toFile().equals(file));
+        }
+    }
+}
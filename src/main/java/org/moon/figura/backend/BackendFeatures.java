@@ -0,0 +1,41 @@
+package org.moon.figura.backend;
+
+import com.google.gson.JsonObject;
+import org.moon.figura.lua.api.ping.PingArg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The optional protocol features, which the backend offers in its connected message.
+ * Each one is only used after we agree to it by sending it back, since not every client supports them.
+ */
+public class BackendFeatures {
+
+    //binary protocol, otherwise everything stays as json
+    public boolean binary;
+    //ping arguments stay in the v1 format unless the backend agrees that every client can read v2
+    public boolean pingV2;
+    //same for the pings of a tick being sent together, which older clients can not read
+    public boolean pingBatch;
+
+    //agrees to every offered feature we support, returning the messages to send back, in order
+    public List<JsonObject> negotiate(JsonObject connected) {
+        List<JsonObject> replies = new ArrayList<>();
+        binary = accept(connected, "binary", WebsocketManager.BINARY_PROTOCOL, replies);
+        pingV2 = accept(connected, "pings", PingArg.VERSION, replies);
+        pingBatch = accept(connected, "pingBatch", NetworkManager.PING_BATCH_VERSION, replies);
+        return replies;
+    }
+
+    private static boolean accept(JsonObject connected, String feature, int version, List<JsonObject> replies) {
+        if (!connected.has(feature) || connected.get(feature).getAsInt() < version)
+            return false;
+
+        JsonObject reply = new JsonObject();
+        reply.addProperty("type", feature);
+        reply.addProperty("version", version);
+        replies.add(reply);
+        return true;
+    }
+}
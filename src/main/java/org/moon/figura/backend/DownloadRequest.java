@@ -1,6 +1,7 @@
 package org.moon.figura.backend;
 
 import com.google.gson.JsonObject;
+import org.moon.figura.binary_backend_wip.packets.client2server.C2SDownloadAvatarPacket;
 
 import java.util.UUID;
 
@@ -50,11 +51,25 @@ public class DownloadRequest {
                 if (!NetworkManager.hasBackend())
                     return;
 
+                if (NetworkManager.useBinary()) {
+                    C2SDownloadAvatarPacket packet = new C2SDownloadAvatarPacket();
+                    packet.owner = id;
+                    packet.avatarID = avatarID;
+                    packet.hash = AvatarCache.getHash(id);
+                    NetworkManager.sendPacket(packet);
+                    return;
+                }
+
                 JsonObject json = new JsonObject();
                 json.addProperty("type", "download");
                 json.addProperty("owner", id.toString());
                 json.addProperty("id", avatarID);
 
+                //lets the backend answer with "cached" instead of the avatar
+                String hash = AvatarCache.getHash(id);
+                if (hash != null)
+                    json.addProperty("hash", hash);
+
                 NetworkManager.sendMessage(NetworkManager.GSON.toJson(json));
             };
         }
@@ -0,0 +1,126 @@
+package org.moon.figura.backend;
+
+import net.minecraft.client.Camera;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.phys.Vec3;
+import org.moon.figura.utils.RollingAverage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Pending backend downloads, at most one per player.
+ * Instead of first come first served, the next request is the one with the best priority at the time it is sent:
+ * loaded players in front of the camera first, then the other loaded players, then the ones only in the tab list,
+ * and lastly everything else (like skulls), each group ordered by distance and then by waiting time.
+ * Priorities are only calculated when a request is sent, since they change every time the camera moves.
+ */
+public class DownloadScheduler {
+
+    private static final double VISIBLE = 0, LOADED = 1e8, TAB_LIST = 2e8, OTHER = 3e8;
+
+    private final Map<UUID, Entry> requests = new HashMap<>();
+    private final RollingAverage waitTime = new RollingAverage(100);
+
+    private static class Entry {
+        private DownloadRequest request;
+        private final long time = System.currentTimeMillis();
+
+        private Entry(DownloadRequest request) {
+            this.request = request;
+        }
+    }
+
+    //adds a new request, replacing any other pending request of the same player
+    public synchronized void add(DownloadRequest request) {
+        Entry entry = requests.get(request.id);
+        if (entry == null)
+            requests.put(request.id, new Entry(request));
+        else
+            entry.request = request;
+    }
+
+    //adds the request only if there is nothing pending for this player
+    public synchronized void addIfAbsent(DownloadRequest request) {
+        requests.putIfAbsent(request.id, new Entry(request));
+    }
+
+    //returns true if a request was pending
+    public synchronized boolean cancel(UUID id) {
+        return requests.remove(id) != null;
+    }
+
+    //only cancels the pending request if it matches the filter
+    public synchronized boolean cancel(UUID id, Predicate<DownloadRequest> filter) {
+        Entry entry = requests.get(id);
+        return entry != null && filter.test(entry.request) && requests.remove(id) != null;
+    }
+
+    public synchronized boolean isPending(UUID id) {
+        return requests.containsKey(id);
+    }
+
+    //removes and returns the request with the best priority
+    public synchronized DownloadRequest poll() {
+        if (requests.isEmpty())
+            return null;
+
+        Minecraft minecraft = Minecraft.getInstance();
+        Camera camera = minecraft.gameRenderer.getMainCamera();
+        Vec3 cameraPos = camera.getPosition();
+        Vec3 look = new Vec3(camera.getLookVector());
+        ClientPacketListener connection = minecraft.getConnection();
+
+        Entry best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Entry entry : requests.values()) {
+            double score = getPriority(entry.request.id, minecraft, connection, cameraPos, look);
+            if (score < bestScore || (score == bestScore && entry.time < best.time)) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+
+        requests.remove(best.request.id);
+        waitTime.add(System.currentTimeMillis() - best.time);
+        return best.request;
+    }
+
+    //lower is sooner
+    private static double getPriority(UUID id, Minecraft minecraft, ClientPacketListener connection, Vec3 cameraPos, Vec3 look) {
+        Player player = minecraft.level == null ? null : minecraft.level.getPlayerByUUID(id);
+        if (player != null) {
+            Vec3 direction = player.position().subtract(cameraPos);
+            double distance = direction.lengthSqr();
+            return (direction.dot(look) >= 0 ? VISIBLE : LOADED) + Math.min(distance, LOADED - 1);
+        }
+
+        if (connection != null && connection.getPlayerInfo(id) != null)
+            return TAB_LIST;
+
+        return OTHER;
+    }
+
+    // -- metrics -- //
+
+    public synchronized int size() {
+        return requests.size();
+    }
+
+    public synchronized double getAverageWait() {
+        return waitTime.getAverage();
+    }
+
+    //how long the oldest pending request has been waiting, in milliseconds
+    public synchronized long getLongestWait() {
+        long now = System.currentTimeMillis();
+        long max = 0;
+        for (Entry entry : requests.values())
+            max = Math.max(max, now - entry.time);
+        return max;
+    }
+}
@@ -4,7 +4,9 @@ import com.google.gson.JsonObject;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.Avatar;
 import org.moon.figura.avatars.AvatarManager;
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
 
+import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.UUID;
 import java.util.function.BiConsumer;
@@ -24,16 +26,9 @@ public enum EventHandler {
 
     }),
     PING((owner, json) -> {
-        Avatar avatar = AvatarManager.getAvatarForPlayer(owner);
-        if (avatar == null)
-            return;
-
         int id = json.get("name").getAsInt();
-        String data = json.get("data").getAsString();
-
-        avatar.runPing(id, Base64.getDecoder().decode(data.getBytes()));
-        NetworkManager.pingsReceived++;
-        if (NetworkManager.lastPing == 0) NetworkManager.lastPing = FiguraMod.ticks;
+        byte[] data = Base64.getDecoder().decode(json.get("data").getAsString().getBytes());
+        runPing(owner, id, data);
     }),
     DELETE((owner, json) -> {
         if (!FiguraMod.isLocal(owner) || AvatarManager.localUploaded)
@@ -46,6 +41,43 @@ public enum EventHandler {
         this.consumer = consumer;
     }
 
+    //used by both the json and the binary protocol
+    public static void runPing(UUID owner, int id, byte[] data) {
+        Avatar avatar = AvatarManager.getAvatarForPlayer(owner);
+        if (avatar == null)
+            return;
+
+        if (id == NetworkManager.PING_BATCH) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                int count = ByteStreamConverter.readVarInt(buffer);
+                for (int i = 0; i < count; i++) {
+                    int pingId = ByteStreamConverter.readVarInt(buffer);
+                    byte[] pingData = ByteStreamConverter.readByteArray(buffer);
+
+                    //the host already ran its unsynced pings when sending them
+                    if ((pingId & 1) == 0 && avatar.isHost)
+                        continue;
+
+                    //each ping runs on its own, so a failing one does not drop the rest of the batch
+                    try {
+                        avatar.runPing(pingId >> 1, pingData);
+                    } catch (Exception e) {
+                        FiguraMod.LOGGER.warn("Failed to run ping " + (pingId >> 1) + "!", e);
+                    }
+                    NetworkManager.pingsReceived++;
+                }
+            } catch (Exception e) {
+                FiguraMod.LOGGER.warn("Failed to read ping batch!", e);
+            }
+        } else {
+            avatar.runPing(id, data);
+            NetworkManager.pingsReceived++;
+        }
+
+        if (NetworkManager.lastPing == 0) NetworkManager.lastPing = FiguraMod.ticks;
+    }
+
     public static void readEvent(UUID owner, JsonObject event) {
         try {
             if (!event.has("type"))
@@ -3,7 +3,7 @@ package org.moon.figura.backend;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import net.minecraft.nbt.NbtIo;
+import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.TextComponent;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.AvatarManager;
@@ -15,7 +15,6 @@ import org.moon.figura.utils.FiguraText;
 import org.moon.figura.utils.TextUtils;
 import org.moon.figura.utils.Version;
 
-import java.io.ByteArrayInputStream;
 import java.util.Base64;
 import java.util.BitSet;
 import java.util.UUID;
@@ -57,6 +56,10 @@ public enum MessageHandler {
         backend.upload.set(limits.get("upload").getAsFloat());
         backend.download.set(limits.get("download").getAsFloat());
 
+        //switch to the optional features the backend supports, like the binary protocol
+        for (JsonObject reply : backend.features.negotiate(json))
+            NetworkManager.sendMessage(NetworkManager.GSON.toJson(reply));
+
         int config = Config.UPDATE_CHANNEL.asInt();
         if (config != 0) {
             try {
@@ -93,15 +96,11 @@ public enum MessageHandler {
         UUID owner = UUID.fromString(json.get("owner").getAsString());
 
         String avatar = json.get("data").getAsString();
-        byte[] bytes = Base64.getDecoder().decode(avatar.getBytes());
-
-        try {
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            AvatarManager.setAvatar(owner, NbtIo.readCompressed(bais));
-            NetworkManager.subscribe(owner);
-        } catch (Exception e) {
-            FiguraMod.LOGGER.error("", e);
-        }
+        receiveAvatar(owner, Base64.getDecoder().decode(avatar.getBytes()));
+    }),
+    CACHED(json -> {
+        UUID owner = UUID.fromString(json.get("owner").getAsString());
+        loadCachedAvatar(owner, json.has("hash") ? json.get("hash").getAsString() : null);
     }),
     USERINFO(json -> {
         json = json.getAsJsonObject("user");
@@ -142,6 +141,34 @@ public enum MessageHandler {
 
     // -- methods -- //
 
+    //used by both the json and the binary protocol
+    public static void receiveAvatar(UUID owner, byte[] data) {
+        AvatarCache.store(owner, data);
+        try {
+            AvatarManager.setAvatar(owner, data);
+            NetworkManager.subscribe(owner);
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("", e);
+        }
+    }
+
+    //the backend told us our cached copy is still up to date
+    //the copy is read and checked by the load pipeline, and downloaded again when it is missing, broken, or fails to decode
+    public static void loadCachedAvatar(UUID owner, String hash) {
+        try {
+            AvatarManager.setAvatar(owner, () -> AvatarCache.read(owner, hash), () -> Minecraft.getInstance().execute(() -> redownload(owner)));
+            NetworkManager.subscribe(owner);
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("", e);
+        }
+    }
+
+    //cache is gone or broken, download it again
+    private static void redownload(UUID owner) {
+        AvatarCache.remove(owner);
+        NetworkManager.getAvatar(owner);
+    }
+
     public static void handleMessage(String message) {
         JsonObject json;
         try {
@@ -12,7 +12,6 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientHandshakePacketListenerImpl;
 import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.client.multiplayer.resolver.ServerAddress;
-import net.minecraft.nbt.NbtIo;
 import net.minecraft.network.Connection;
 import net.minecraft.network.ConnectionProtocol;
 import net.minecraft.network.chat.Component;
@@ -22,13 +21,21 @@ import net.minecraft.network.protocol.login.ClientboundGameProfilePacket;
 import net.minecraft.network.protocol.login.ServerboundHelloPacket;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.Avatar;
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.AbstractPacket;
+import org.moon.figura.binary_backend_wip.packets.client2server.C2SDeleteAvatarPacket;
+import org.moon.figura.binary_backend_wip.packets.client2server.C2SPingPacket;
+import org.moon.figura.binary_backend_wip.packets.client2server.C2SSubscribePacket;
+import org.moon.figura.binary_backend_wip.packets.client2server.C2SUploadAvatarPacket;
 import org.moon.figura.config.Config;
 import org.moon.figura.lua.api.ping.PingArg;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Base64;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -38,7 +45,7 @@ public class NetworkManager {
     public static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
     private static final int RECONNECT = 6000; //5 min
 
-    protected static final LinkedList<DownloadRequest> REQUEST_QUEUE = new LinkedList<>();
+    protected static final DownloadScheduler REQUEST_QUEUE = new DownloadScheduler();
 
     public static int backendStatus = 1;
     public static String disconnectedReason;
@@ -52,6 +59,12 @@ public class NetworkManager {
 
     public static int lastPing, pingsSent, pingsReceived;
 
+    //pings sent in the same tick are queued and sent together in a single message, in the order they were sent
+    //only once the backend agreed to it, otherwise they are still sent one by one
+    public static final int PING_BATCH = -1;
+    public static final int PING_BATCH_VERSION = 1;
+    private static final List<QueuedPing> PING_QUEUE = new ArrayList<>();
+
     private static CompletableFuture<Void> tasks;
 
     // -- methods -- //
@@ -207,8 +220,37 @@ public class NetworkManager {
         if (hasBackend()) backend.send(message);
     }
 
-    public static void clearRequestsFor(UUID id) {
-        REQUEST_QUEUE.removeIf(request -> request.id.equals(id));
+    //true when the backend agreed to use the binary protocol
+    public static boolean useBinary() {
+        return hasBackend() && backend.features.binary;
+    }
+
+    //true when the backend agreed to relay v2 ping arguments
+    public static boolean usePingV2() {
+        return hasBackend() && backend.features.pingV2;
+    }
+
+    //true when the backend agreed to relay ping batches
+    public static boolean usePingBatch() {
+        return hasBackend() && backend.features.pingBatch;
+    }
+
+    public static void sendPacket(AbstractPacket packet) {
+        if (hasBackend()) backend.sendPacket(packet);
+    }
+
+    //returns true if a download was still pending
+    public static boolean clearRequestsFor(UUID id) {
+        return REQUEST_QUEUE.cancel(id);
+    }
+
+    //returns true if the avatar download was still pending
+    public static boolean cancelAvatarDownload(UUID id) {
+        return REQUEST_QUEUE.cancel(id, request -> request instanceof DownloadRequest.AvatarRequest);
+    }
+
+    public static DownloadScheduler getDownloadQueue() {
+        return REQUEST_QUEUE;
     }
 
     public static boolean canUpload() {
@@ -223,24 +265,27 @@ public class NetworkManager {
 
         assertBackend();
         run(() -> {
-            if (avatar == null || avatar.nbt == null || !hasBackend())
+            if (avatar == null || !hasBackend())
                 return;
 
-            JsonObject json = new JsonObject();
-            json.addProperty("type", "upload");
-            json.addProperty("id", id == null ? "avatar" : id.toString()); //todo - change to a random UUID when the multiple avatar system is done
+            byte[] data = avatar.getCompressedNbt();
+            if (data == null)
+                return;
 
-            try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                NbtIo.writeCompressed(avatar.nbt, baos);
+            String avatarID = id == null ? "avatar" : id.toString(); //todo - change to a random UUID when the multiple avatar system is done
 
-                String bytes = Base64.getEncoder().encodeToString(baos.toByteArray());
-                json.addProperty("data", bytes);
-            } catch (Exception e) {
-                FiguraMod.LOGGER.error("Failed to upload avatar!", e);
+            if (useBinary()) {
+                C2SUploadAvatarPacket packet = new C2SUploadAvatarPacket();
+                packet.avatarID = avatarID;
+                packet.data = data;
+                sendPacket(packet);
                 return;
             }
 
+            JsonObject json = new JsonObject();
+            json.addProperty("type", "upload");
+            json.addProperty("id", avatarID);
+            json.addProperty("data", Base64.getEncoder().encodeToString(data));
             sendMessage(GSON.toJson(json));
         });
     }
@@ -251,9 +296,17 @@ public class NetworkManager {
             if (!hasBackend())
                 return;
 
+            String avatarID = id == null ? "avatar" : id.toString(); //todo
+            if (useBinary()) {
+                C2SDeleteAvatarPacket packet = new C2SDeleteAvatarPacket();
+                packet.avatarID = avatarID;
+                sendPacket(packet);
+                return;
+            }
+
             JsonObject json = new JsonObject();
             json.addProperty("type", "delete");
-            json.addProperty("id", id == null ? "avatar" : id.toString()); //todo
+            json.addProperty("id", avatarID);
             sendMessage(GSON.toJson(json));
         });
     }
@@ -261,12 +314,18 @@ public class NetworkManager {
     public static void getAvatar(UUID id) { //TODO - replace "avatar"
         String avatarID = "avatar";
 
-        DownloadRequest.AvatarRequest request = new DownloadRequest.AvatarRequest(id, avatarID);
-        REQUEST_QUEUE.remove(request);
-        REQUEST_QUEUE.add(request);
+        REQUEST_QUEUE.add(new DownloadRequest.AvatarRequest(id, avatarID));
     }
 
     public static void subscribe(UUID id) {
+        if (useBinary()) {
+            C2SSubscribePacket packet = new C2SSubscribePacket();
+            packet.target = id;
+            packet.subscribe = true;
+            sendPacket(packet);
+            return;
+        }
+
         JsonObject sub = new JsonObject();
         sub.addProperty("type", "subscribe");
         sub.addProperty("uuid", id.toString());
@@ -274,6 +333,14 @@ public class NetworkManager {
     }
 
     public static void unsubscribe(UUID id) {
+        if (useBinary()) {
+            C2SSubscribePacket packet = new C2SSubscribePacket();
+            packet.target = id;
+            packet.subscribe = false;
+            sendPacket(packet);
+            return;
+        }
+
         JsonObject sub = new JsonObject();
         sub.addProperty("type", "unsubscribe");
         sub.addProperty("uuid", id.toString());
@@ -285,6 +352,94 @@ public class NetworkManager {
         if (data == null)
             return null;
 
+        PING_QUEUE.add(new QueuedPing(id, sync, data));
+        pingsSent++;
+        if (lastPing == 0) lastPing = FiguraMod.ticks;
+
+        return data;
+    }
+
+    //called after the avatars ticked, so the pings of this tick go out in this tick
+    public static void flushPings() {
+        if (PING_QUEUE.isEmpty())
+            return;
+
+        List<QueuedPing> pings = new ArrayList<>(PING_QUEUE);
+        PING_QUEUE.clear();
+
+        if (!hasBackend())
+            return;
+
+        if (!usePingBatch()) {
+            for (QueuedPing ping : pings)
+                sendPingMessage(ping.id(), ping.sync(), ping.data());
+            return;
+        }
+
+        //split the batch so no message is larger than what the backend allows for a ping
+        //the sizes include the varints of the batch, which take at most 5 bytes each
+        double max = backend.pingSize.getMax();
+        long limit = max > 0 ? (long) max : Long.MAX_VALUE;
+        List<QueuedPing> batch = new ArrayList<>();
+        long size = 5;
+        for (QueuedPing ping : pings) {
+            int pingSize = ping.data().length + 10;
+            if (!batch.isEmpty() && size + pingSize > limit) {
+                sendPingBatch(batch);
+                batch = new ArrayList<>();
+                size = 5;
+            }
+            batch.add(ping);
+            size += pingSize;
+        }
+        sendPingBatch(batch);
+    }
+
+    private static void sendPingBatch(List<QueuedPing> pings) {
+        //the message is synced when any ping is, the receivers skip the echo of the unsynced ones
+        boolean sync = false;
+        for (QueuedPing ping : pings)
+            sync |= ping.sync();
+
+        //a single ping is sent as it is, so it can be read by older versions
+        int id;
+        byte[] data;
+        if (pings.size() == 1) {
+            id = pings.get(0).id();
+            data = pings.get(0).data();
+        } else {
+            try {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                DataOutputStream dos = new DataOutputStream(baos);
+
+                //the lowest bit of each id tells whether the ping is synced
+                ByteStreamConverter.writeVarInt(dos, pings.size());
+                for (QueuedPing ping : pings) {
+                    ByteStreamConverter.writeVarInt(dos, ping.id() << 1 | (ping.sync() ? 1 : 0));
+                    ByteStreamConverter.writeByteArray(dos, ping.data());
+                }
+
+                id = PING_BATCH;
+                data = baos.toByteArray();
+            } catch (Exception e) {
+                FiguraMod.LOGGER.error("Failed to write ping batch!", e);
+                return;
+            }
+        }
+
+        sendPingMessage(id, sync, data);
+    }
+
+    private static void sendPingMessage(int id, boolean sync, byte[] data) {
+        if (useBinary()) {
+            C2SPingPacket packet = new C2SPingPacket();
+            packet.pingID = id;
+            packet.sync = sync;
+            packet.data = data;
+            sendPacket(packet);
+            return;
+        }
+
         JsonObject json = new JsonObject();
         json.addProperty("type", "sendPing");
         json.addProperty("name", id + "");
@@ -295,16 +450,11 @@ public class NetworkManager {
 
         json.add("data", array);
         NetworkManager.sendMessage(NetworkManager.GSON.toJson(json));
-        pingsSent++;
-        if (lastPing == 0) lastPing = FiguraMod.ticks;
-
-        return data;
     }
 
     public static void fetchUserdata(UUID id) {
-        DownloadRequest request = new DownloadRequest(id);
-        if (!REQUEST_QUEUE.contains(request))
-            REQUEST_QUEUE.add(request);
+        //avatar requests also fetch the userdata
+        REQUEST_QUEUE.addIfAbsent(new DownloadRequest(id));
     }
 
     // -- backend command -- //
@@ -394,4 +544,6 @@ public class NetworkManager {
 
         return backend;
     }
+
+    private record QueuedPing(int id, boolean sync, byte[] data) {}
 }
@@ -4,11 +4,16 @@ import net.minecraft.client.multiplayer.resolver.ServerAddress;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 import org.moon.figura.FiguraMod;
+import org.moon.figura.binary_backend_wip.NewMessageHandler;
+import org.moon.figura.binary_backend_wip.handlers.MessageHandlerV0;
+import org.moon.figura.binary_backend_wip.packets.AbstractPacket;
 import org.moon.figura.config.Config;
 import org.moon.figura.gui.FiguraToast;
 import org.moon.figura.utils.FiguraText;
 import org.moon.figura.utils.RefilledNumber;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
@@ -48,6 +53,12 @@ public class WebsocketManager extends WebSocketClient {
     public final RefilledNumber upload = new RefilledNumber();
     public final RefilledNumber download = new RefilledNumber();
 
+    //binary protocol, only used after the backend agrees to it, otherwise everything stays as json
+    public static final int BINARY_PROTOCOL = 0;
+    private final NewMessageHandler binaryHandler = MessageHandlerV0.get();
+
+    public final BackendFeatures features = new BackendFeatures();
+
     public WebsocketManager() {
         super(URI.create(getBackendAddress()));
     }
@@ -65,6 +76,9 @@ public class WebsocketManager extends WebSocketClient {
         upload.tick();
         download.tick();
 
+        //run the binary messages received since last tick
+        binaryHandler.flushActionQueue();
+
         DownloadRequest request;
         if (download.use() && (request = NetworkManager.REQUEST_QUEUE.poll()) != null) request.function().run();
     }
@@ -86,7 +100,7 @@ public class WebsocketManager extends WebSocketClient {
     public void onMessage(ByteBuffer bytes) {
         if (NetworkManager.websocketDebug)
             FiguraMod.LOGGER.warn("RAW RECEIVE [" + bytes.remaining() + "b]");
-        //MessageHandler.handleMessage(bytes);
+        binaryHandler.acceptMessage(bytes);
     }
 
     @Override
@@ -130,6 +144,16 @@ public class WebsocketManager extends WebSocketClient {
         super.send(data);
     }
 
+    public void sendPacket(AbstractPacket packet) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            packet.write(new DataOutputStream(baos));
+            send(baos.toByteArray());
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("Failed to send packet!", e);
+        }
+    }
+
     private void handleClose(int code) {
         switch (code) {
             case 4000 -> NetworkManager.auth(true);
@@ -33,6 +33,8 @@ public class ByteStreamConverter {
         do {
             if (position >= 32)
                 throw new IOException("VarInt was too big!");
+            if (!buffer.hasRemaining())
+                throw new IOException("VarInt was cut short!");
             nextByte = buffer.get();
             //Use the last 7 bytes of the number.
             result |= (nextByte & SEGMENT_BITS) << position;
@@ -76,6 +78,9 @@ public class ByteStreamConverter {
         int len = readVarInt(buf);
         if (len > MAX_BYTE_ARR_SIZE)
             throw new IOException("Byte Array too big (" + len + " bytes)");
+        //checked before allocating, so a bogus length can not allocate more than what was received
+        if (len < 0 || len > buf.remaining())
+            throw new IOException("Invalid Byte Array length " + len + ", only " + buf.remaining() + " bytes left");
         byte[] bytes = new byte[len];
         buf.get(bytes);
         return bytes;
@@ -86,6 +91,8 @@ public class ByteStreamConverter {
     }
 
     public static boolean readBoolean(ByteBuffer buf) throws IOException {
+        if (!buf.hasRemaining())
+            throw new IOException("Attempt to read boolean failed: no bytes left");
         byte val = buf.get();
         if (val == 1) return true;
         if (val == 0) return false;
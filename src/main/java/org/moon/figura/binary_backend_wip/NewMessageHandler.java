@@ -95,7 +95,8 @@ public class NewMessageHandler {
                 throw new IOException("No handler exists for type code " + typeCode);
             Runnable action = handler.parseToAction(message);
             pendingAction.put(action);
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
+            //malformed messages from the backend must never kill the websocket thread
             FiguraMod.LOGGER.warn("Failed to parse message", e);
         } catch (InterruptedException e) {
             FiguraMod.LOGGER.warn("Message Parser was interrupted", e);
@@ -111,11 +112,13 @@ public class NewMessageHandler {
     }
 
     public void flushActionQueue() {
-        while (!pendingAction.isEmpty()) {
+        Runnable action;
+        while ((action = pendingAction.poll()) != null) {
+            //runs on the client tick, so a failing action must not take the game, nor the other actions, down with it
             try {
-                pendingAction.take().run();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                action.run();
+            } catch (Exception e) {
+                FiguraMod.LOGGER.error("Failed to run network action", e);
             }
         }
     }
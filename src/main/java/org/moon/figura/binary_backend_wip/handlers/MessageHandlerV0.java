@@ -1,17 +1,61 @@
 package org.moon.figura.binary_backend_wip.handlers;
 
+import com.google.gson.JsonObject;
+import org.moon.figura.backend.EventHandler;
+import org.moon.figura.backend.MessageHandler;
 import org.moon.figura.binary_backend_wip.NewMessageHandler;
 import org.moon.figura.binary_backend_wip.packets.PacketType;
 import org.moon.figura.binary_backend_wip.packets.server2client.S2CConnectedPacket;
+import org.moon.figura.binary_backend_wip.packets.server2client.S2CEventPacket;
 import org.moon.figura.binary_backend_wip.packets.server2client.S2CSystemMessagePacket;
 
+import java.util.UUID;
+
 //Not sure about this class name idea, but it's meant to go with whatever version of the protocol it was designed for.
 public class MessageHandlerV0 {
 
+    //where the packets end up, the same handlers the json protocol uses
+    public interface Listener {
+        void avatar(UUID owner, byte[] data);
+        void avatarCached(UUID owner, String hash);
+        void ping(UUID owner, int id, byte[] data);
+        void event(UUID owner, JsonObject event);
+    }
+
+    private static final Listener GAME = new Listener() {
+        @Override
+        public void avatar(UUID owner, byte[] data) {
+            MessageHandler.receiveAvatar(owner, data);
+        }
+
+        @Override
+        public void avatarCached(UUID owner, String hash) {
+            MessageHandler.loadCachedAvatar(owner, hash);
+        }
+
+        @Override
+        public void ping(UUID owner, int id, byte[] data) {
+            EventHandler.runPing(owner, id, data);
+        }
+
+        @Override
+        public void event(UUID owner, JsonObject event) {
+            EventHandler.readEvent(owner, event);
+        }
+    };
+
     public static NewMessageHandler get() {
+        return get(GAME);
+    }
+
+    public static NewMessageHandler get(Listener listener) {
         return NewMessageHandler.builder()
                 .register(PacketType.S2C_SYSTEM_MESSAGE, MessageHandlerV0::handleSystemMessage)
                 .register(PacketType.S2C_CONNECTED, MessageHandlerV0::handleConnected)
+                .register(PacketType.S2C_AVATAR, packet -> listener.avatar(packet.owner, packet.data))
+                .register(PacketType.S2C_AVATAR_CACHED, packet -> listener.avatarCached(packet.owner, packet.hash))
+                .register(PacketType.S2C_PING, packet -> listener.ping(packet.owner, packet.pingID, packet.data))
+                .register(PacketType.S2C_EVENT, packet -> listener.event(packet.owner, toJson(packet)))
                 .build();
     }
 
@@ -29,4 +73,10 @@ public class MessageHandlerV0 {
         //Do stuff with the packet
     }
 
+    //events without payload share the json handlers
+    private static JsonObject toJson(S2CEventPacket packet) {
+        JsonObject event = new JsonObject();
+        event.addProperty("type", packet.event);
+        return event;
+    }
 }
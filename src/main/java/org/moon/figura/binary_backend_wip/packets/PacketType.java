@@ -1,9 +1,7 @@
 package org.moon.figura.binary_backend_wip.packets;
 
-import org.moon.figura.binary_backend_wip.packets.client2server.C2SAuthTokenPacket;
-import org.moon.figura.binary_backend_wip.packets.server2client.S2CConnectedPacket;
-import org.moon.figura.binary_backend_wip.packets.server2client.S2CKeepalivePacket;
-import org.moon.figura.binary_backend_wip.packets.server2client.S2CSystemMessagePacket;
+import org.moon.figura.binary_backend_wip.packets.client2server.*;
+import org.moon.figura.binary_backend_wip.packets.server2client.*;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -12,10 +10,20 @@ import java.util.function.Supplier;
 public class PacketType<T extends AbstractPacket> {
 
     public static final PacketType<C2SAuthTokenPacket> C2S_AUTH_TOKEN = new PacketType<>(85, C2SAuthTokenPacket::new);
+    public static final PacketType<C2SUploadAvatarPacket> C2S_UPLOAD_AVATAR = new PacketType<>(86, C2SUploadAvatarPacket::new);
+    public static final PacketType<C2SDeleteAvatarPacket> C2S_DELETE_AVATAR = new PacketType<>(87, C2SDeleteAvatarPacket::new);
+    public static final PacketType<C2SDownloadAvatarPacket> C2S_DOWNLOAD_AVATAR = new PacketType<>(88, C2SDownloadAvatarPacket::new);
+    public static final PacketType<C2SPingPacket> C2S_PING = new PacketType<>(89, C2SPingPacket::new);
+    public static final PacketType<C2SSubscribePacket> C2S_SUBSCRIBE = new PacketType<>(90, C2SSubscribePacket::new);
+    public static final PacketType<C2SSubscribePacket> C2S_UNSUBSCRIBE = new PacketType<>(91, C2SSubscribePacket::new);
 
     public static final PacketType<S2CSystemMessagePacket> S2C_SYSTEM_MESSAGE = new PacketType<>(101, S2CSystemMessagePacket::new);
     public static final PacketType<S2CConnectedPacket> S2C_CONNECTED = new PacketType<>(102, S2CConnectedPacket::new);
     public static final PacketType<S2CKeepalivePacket> S2C_KEEPALIVE = new PacketType<>(103, S2CKeepalivePacket::new);
+    public static final PacketType<S2CAvatarPacket> S2C_AVATAR = new PacketType<>(104, S2CAvatarPacket::new);
+    public static final PacketType<S2CPingPacket> S2C_PING = new PacketType<>(105, S2CPingPacket::new);
+    public static final PacketType<S2CEventPacket> S2C_EVENT = new PacketType<>(106, S2CEventPacket::new);
+    public static final PacketType<S2CAvatarCachedPacket> S2C_AVATAR_CACHED = new PacketType<>(107, S2CAvatarCachedPacket::new);
 
     public final Supplier<T> constructor;
     public final int id;
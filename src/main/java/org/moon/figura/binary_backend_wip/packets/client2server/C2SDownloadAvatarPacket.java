@@ -0,0 +1,27 @@
+package org.moon.figura.binary_backend_wip.packets.client2server;
+
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+public class C2SDownloadAvatarPacket extends AbstractC2SPacket {
+
+    public UUID owner;
+    public String avatarID;
+    public String hash; //hash of our cached copy, empty when we have none
+
+    @Override
+    protected int getId() {
+        return PacketType.C2S_DOWNLOAD_AVATAR.id;
+    }
+
+    @Override
+    protected void writeData(DataOutputStream dos) throws IOException {
+        ByteStreamConverter.writeUUID(dos, owner);
+        ByteStreamConverter.writeString(dos, avatarID);
+        ByteStreamConverter.writeString(dos, hash == null ? "" : hash);
+    }
+}
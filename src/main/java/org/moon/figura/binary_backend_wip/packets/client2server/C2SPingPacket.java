@@ -0,0 +1,27 @@
+package org.moon.figura.binary_backend_wip.packets.client2server;
+
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class C2SPingPacket extends AbstractC2SPacket {
+
+    public int pingID;
+    public boolean sync;
+    public byte[] data;
+
+    @Override
+    protected int getId() {
+        return PacketType.C2S_PING.id;
+    }
+
+    @Override
+    protected void writeData(DataOutputStream dos) throws IOException {
+        //ping ids can be negative (batches), so they are not sent as a varint
+        dos.writeInt(pingID);
+        ByteStreamConverter.writeBoolean(dos, sync);
+        ByteStreamConverter.writeByteArray(dos, data);
+    }
+}
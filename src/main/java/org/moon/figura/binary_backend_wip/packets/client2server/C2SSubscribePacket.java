@@ -0,0 +1,24 @@
+package org.moon.figura.binary_backend_wip.packets.client2server;
+
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+public class C2SSubscribePacket extends AbstractC2SPacket {
+
+    public UUID target;
+    public boolean subscribe;
+
+    @Override
+    protected int getId() {
+        return subscribe ? PacketType.C2S_SUBSCRIBE.id : PacketType.C2S_UNSUBSCRIBE.id;
+    }
+
+    @Override
+    protected void writeData(DataOutputStream dos) throws IOException {
+        ByteStreamConverter.writeUUID(dos, target);
+    }
+}
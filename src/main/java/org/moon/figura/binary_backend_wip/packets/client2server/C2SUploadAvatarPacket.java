@@ -0,0 +1,24 @@
+package org.moon.figura.binary_backend_wip.packets.client2server;
+
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class C2SUploadAvatarPacket extends AbstractC2SPacket {
+
+    public String avatarID;
+    public byte[] data;
+
+    @Override
+    protected int getId() {
+        return PacketType.C2S_UPLOAD_AVATAR.id;
+    }
+
+    @Override
+    protected void writeData(DataOutputStream dos) throws IOException {
+        ByteStreamConverter.writeString(dos, avatarID);
+        ByteStreamConverter.writeByteArray(dos, data);
+    }
+}
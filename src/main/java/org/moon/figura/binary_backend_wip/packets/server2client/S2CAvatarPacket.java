@@ -0,0 +1,25 @@
+package org.moon.figura.binary_backend_wip.packets.server2client;
+
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+public class S2CAvatarPacket extends AbstractS2CPacket {
+
+    public UUID owner;
+    public byte[] data;
+
+    @Override
+    protected int getId() {
+        return PacketType.S2C_AVATAR.id;
+    }
+
+    @Override
+    public void fill(ByteBuffer buf) throws IOException {
+        owner = ByteStreamConverter.readUUID(buf);
+        data = ByteStreamConverter.readByteArray(buf);
+    }
+}
@@ -0,0 +1,25 @@
+package org.moon.figura.binary_backend_wip.packets.server2client;
+
+import org.moon.figura.binary_backend_wip.ByteStreamConverter;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+public class S2CEventPacket extends AbstractS2CPacket {
+
+    public UUID owner;
+    public String event;
+
+    @Override
+    protected int getId() {
+        return PacketType.S2C_EVENT.id;
+    }
+
+    @Override
+    public void fill(ByteBuffer buf) throws IOException {
+        owner = ByteStreamConverter.readUUID(buf);
+        event = ByteStreamConverter.readString(buf);
+    }
+}
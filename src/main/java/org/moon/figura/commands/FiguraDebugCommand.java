@@ -13,13 +13,19 @@ import net.minecraft.resources.ResourceLocation;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.animation.Animation;
 import org.moon.figura.avatars.Avatar;
+import org.moon.figura.avatars.AvatarLoadPipeline;
 import org.moon.figura.avatars.AvatarManager;
 import org.moon.figura.avatars.providers.LocalAvatarFetcher;
+import org.moon.figura.backend.AvatarCache;
 import org.moon.figura.backend.NetworkManager;
 import org.moon.figura.config.Config;
+import org.moon.figura.lua.LuaStringCache;
+import org.moon.figura.lua.api.sound.SoundBufferCache;
+import org.moon.figura.lua.api.world.WorldCache;
 import org.moon.figura.trust.TrustContainer;
 import org.moon.figura.trust.TrustManager;
 import org.moon.figura.utils.FiguraText;
+import org.moon.figura.utils.RollingAverage;
 
 import java.io.FileOutputStream;
 import java.nio.file.Files;
@@ -84,6 +90,21 @@ public class FiguraDebugCommand {
         meta.addProperty("backendDisconnectedReason", NetworkManager.disconnectedReason);
         meta.addProperty("uploaded", AvatarManager.localUploaded);
         meta.addProperty("panicMode", AvatarManager.panic);
+        meta.addProperty("worldCacheHits", WorldCache.getHits());
+        meta.addProperty("worldCacheMisses", WorldCache.getMisses());
+        meta.addProperty("luaStringCacheHits", LuaStringCache.getHits());
+        meta.addProperty("luaStringCacheMisses", LuaStringCache.getMisses());
+        meta.addProperty("luaStringCacheSize", LuaStringCache.getSize());
+        meta.addProperty("avatarCacheHits", AvatarCache.getHits());
+        meta.addProperty("avatarCacheMisses", AvatarCache.getMisses());
+        meta.addProperty("downloadQueueSize", NetworkManager.getDownloadQueue().size());
+        meta.addProperty("downloadAverageWait", NetworkManager.getDownloadQueue().getAverageWait());
+        meta.addProperty("downloadLongestWait", NetworkManager.getDownloadQueue().getLongestWait());
+        meta.addProperty("avatarsLoading", AvatarLoadPipeline.getLoading());
+        meta.addProperty("avatarsWaitingToLoad", AvatarLoadPipeline.getWaiting());
+        meta.addProperty("soundCacheSize", SoundBufferCache.getSize());
+        meta.addProperty("soundCacheHits", SoundBufferCache.getHits());
+        meta.addProperty("soundCacheMisses", SoundBufferCache.getMisses());
 
         root.add("meta", meta);
 
@@ -142,15 +163,23 @@ public class FiguraDebugCommand {
         aMeta.addProperty("authors", avatar.authors);
         aMeta.addProperty("name", avatar.name);
         aMeta.addProperty("entityName", avatar.entityName);
-        aMeta.addProperty("fileSize", avatar.fileSize);
+        aMeta.addProperty("fileSize", avatar.getFileSize());
         aMeta.addProperty("isHost", avatar.isHost);
         aMeta.addProperty("loaded", avatar.loaded);
+
+        JsonObject stages = new JsonObject();
+        for (AvatarLoadPipeline.Stage stage : AvatarLoadPipeline.Stage.values())
+            stages.addProperty(stage.name().toLowerCase(), avatar.isLoaded(stage));
+        aMeta.add("loadedStages", stages);
+
         aMeta.addProperty("owner", avatar.owner.toString());
         aMeta.addProperty("scriptError", avatar.scriptError);
         aMeta.addProperty("hasTexture", avatar.hasTexture);
         aMeta.addProperty("hasLuaRuntime", avatar.luaRuntime != null);
+        if (avatar.luaRuntime != null) aMeta.addProperty("luaRuntimeCreationTime", avatar.luaRuntime.creationTime);
         aMeta.addProperty("hasRenderer", avatar.renderer != null);
-        aMeta.addProperty("hasData", avatar.nbt != null);
+        aMeta.addProperty("hasData", avatar.hasData());
+        aMeta.addProperty("retainedBytes", avatar.getRetainedBytes());
 
         a.add("meta", aMeta);
 
@@ -172,6 +201,18 @@ public class FiguraDebugCommand {
 
         a.add("instructions", inst);
 
+        //avatar event times, in nanoseconds
+        JsonObject times = new JsonObject();
+
+        addTime(times, "entityTick", avatar.entityTickTime);
+        addTime(times, "worldTick", avatar.worldTickTime);
+        addTime(times, "entityRender", avatar.entityRenderTime);
+        addTime(times, "postEntityRender", avatar.postEntityRenderTime);
+        addTime(times, "worldRender", avatar.worldRenderTime);
+        addTime(times, "postWorldRender", avatar.postWorldRenderTime);
+
+        a.add("times", times);
+
         //sounds
         JsonArray sounds = new JsonArray();
 
@@ -193,6 +234,11 @@ public class FiguraDebugCommand {
         return GSON.toJson(root);
     }
 
+    private static void addTime(JsonObject json, String name, RollingAverage time) {
+        json.addProperty(name + "Time", time.getLast());
+        json.addProperty(name + "Average", time.getAverage());
+    }
+
     private static JsonObject getAvatarsPaths(List<LocalAvatarFetcher.AvatarPath> list) {
         JsonObject avatar = new JsonObject();
 
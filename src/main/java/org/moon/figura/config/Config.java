@@ -95,6 +95,9 @@ public enum Config {
     BUTTON_LOCATION(0, 5),
     UPDATE_CHANNEL(1, 3),
     EASTER_EGGS(true),
+    AVATAR_CACHE_SIZE(64, InputType.POSITIVE_INT),
+    AVATAR_MEMORY_MODE(1, 2),
+    SOUND_CACHE_SIZE(32, InputType.POSITIVE_INT),
 
     Dev {{this.name = this.name.copy().withStyle(ChatFormatting.RED);}},
     CONNECTION_TOASTS(true),
@@ -26,7 +26,7 @@ public class PaperDoll {
             return;
 
         //check if should stay always on
-        if (!Config.PAPERDOLL_ALWAYS_ON.asBool() && (avatar = AvatarManager.getAvatarForPlayer(player.getUUID())) != null && avatar.luaRuntime != null && !avatar.luaRuntime.renderer.forcePaperdoll) {
+        if (!Config.PAPERDOLL_ALWAYS_ON.asBool() && (avatar = AvatarManager.getAvatarForPlayer(player.getUUID())) != null && avatar.luaRuntime != null && avatar.luaRuntime.renderer != null && !avatar.luaRuntime.renderer.forcePaperdoll) {
             //if action - reset activity time and enable can draw
             if (player.isSprinting() ||
                     player.isCrouching() ||
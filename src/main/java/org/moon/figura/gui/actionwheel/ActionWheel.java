@@ -56,7 +56,7 @@ public class ActionWheel {
 
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
         Page currentPage;
-        if (avatar == null || avatar.luaRuntime == null || (currentPage = avatar.luaRuntime.action_wheel.currentPage) == null) {
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.action_wheel == null || (currentPage = avatar.luaRuntime.action_wheel.currentPage) == null) {
             //this also pops the stack
             renderEmpty(stack, avatar == null);
             return;
@@ -250,7 +250,7 @@ public class ActionWheel {
 
     public static void execute(int index, boolean left) {
         Avatar avatar;
-        if (!isEnabled() || (avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID())) == null || avatar.luaRuntime == null) {
+        if (!isEnabled() || (avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID())) == null || avatar.luaRuntime == null || avatar.luaRuntime.action_wheel == null) {
             selected = -1;
             return;
         }
@@ -273,7 +273,7 @@ public class ActionWheel {
 
     public static void scroll(double delta) {
         Avatar avatar;
-        if (!isEnabled() || (avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID())) == null || avatar.luaRuntime == null)
+        if (!isEnabled() || (avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID())) == null || avatar.luaRuntime == null || avatar.luaRuntime.action_wheel == null)
             return;
 
         //wheel scroll action
@@ -281,7 +281,7 @@ public class ActionWheel {
 
         //scroll
         Page currentPage;
-        if (selected < 0 || selected > 7 || (currentPage = avatar.luaRuntime.action_wheel.currentPage) == null)
+        if (selected < 0 || selected > 7 || avatar.luaRuntime == null || (currentPage = avatar.luaRuntime.action_wheel.currentPage) == null)
             return;
 
         Action action = currentPage.actions[selected];
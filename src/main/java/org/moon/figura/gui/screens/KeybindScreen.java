@@ -35,7 +35,7 @@ public class KeybindScreen extends AbstractPanelScreen {
 
         //discard
         this.addRenderableWidget(new TexturedButton(width / 2 - 122, height - 24, 120, 20, new FiguraText("gui.reset_all"), null, button -> {
-            if (owner == null || owner.luaRuntime == null)
+            if (owner == null || owner.luaRuntime == null || owner.luaRuntime.keybind == null)
                 return;
 
             for (FiguraKeybind keybind : owner.luaRuntime.keybind.keyBindings)
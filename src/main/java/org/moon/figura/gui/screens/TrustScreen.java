@@ -3,6 +3,7 @@ package org.moon.figura.gui.screens;
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.Screen;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
 import net.minecraft.network.chat.TextComponent;
@@ -137,7 +138,8 @@ public class TrustScreen extends AbstractPanelScreen {
             }
 
             Avatar avatar = AvatarManager.getAvatarForPlayer(id);
-            if (avatar == null || avatar.nbt == null)
+            CompoundTag nbt = avatar == null ? null : avatar.getNbt();
+            if (nbt == null)
                 return;
 
             if (playerList.selectedEntry instanceof PlayerElement player) {
@@ -145,7 +147,7 @@ public class TrustScreen extends AbstractPanelScreen {
                 if (FiguraMod.isLocal(target))
                     AvatarManager.localUploaded = false;
 
-                AvatarManager.setAvatar(target, avatar.nbt);
+                AvatarManager.setAvatar(target, nbt);
                 FiguraToast.sendToast("yoinked");
             }
         });
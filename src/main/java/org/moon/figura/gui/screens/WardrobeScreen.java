@@ -154,7 +154,7 @@ public class WardrobeScreen extends AbstractPanelScreen {
         //backend buttons
         Avatar avatar;
         boolean backend = NetworkManager.backendStatus == 3;
-        upload.active = backend && NetworkManager.canUpload() && !AvatarManager.localUploaded && (avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID())) != null && avatar.nbt != null;
+        upload.active = backend && NetworkManager.canUpload() && !AvatarManager.localUploaded && (avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID())) != null && avatar.hasData();
         delete.active = backend;
     }
 
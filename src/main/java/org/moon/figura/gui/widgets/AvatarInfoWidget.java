@@ -62,10 +62,10 @@ public class AvatarInfoWidget implements FiguraWidget, FiguraTickable, GuiEventL
 
         //update values
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar != null && avatar.nbt != null) {
+        if (avatar != null && avatar.hasData()) {
             values.set(0, new TextComponent(avatar.name).setStyle(accent)); //name
             values.set(1, avatar.authors.isBlank() ? UNKNOWN : new TextComponent(avatar.authors).setStyle(accent)); //authors
-            values.set(2, new TextComponent(MathUtils.asFileSize(avatar.fileSize)).setStyle(accent)); //size
+            values.set(2, new TextComponent(MathUtils.asFileSize(avatar.getFileSize())).setStyle(accent)); //size
             values.set(3, new TextComponent(String.valueOf(avatar.complexity)).setStyle(accent)); //complexity
         } else {
             for (int i = 0; i < TITLES.size(); i++) {
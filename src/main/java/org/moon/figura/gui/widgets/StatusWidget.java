@@ -11,6 +11,7 @@ import net.minecraft.network.chat.Style;
 import net.minecraft.network.chat.TextComponent;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.Avatar;
+import org.moon.figura.avatars.AvatarLoadPipeline;
 import org.moon.figura.avatars.AvatarManager;
 import org.moon.figura.backend.NetworkManager;
 import org.moon.figura.utils.FiguraText;
@@ -61,14 +62,15 @@ public class StatusWidget implements FiguraWidget, FiguraTickable, GuiEventListe
 
         //update status indicators
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        boolean empty = avatar == null || avatar.nbt == null;
+        boolean empty = avatar == null || !avatar.hasData();
 
-        status = empty ? 0 : avatar.fileSize > SIZE_LARGE ? 1 : avatar.fileSize > SIZE_WARNING ? 2 : 3;
+        int size = empty ? 0 : avatar.getFileSize();
+        status = empty ? 0 : size > SIZE_LARGE ? 1 : size > SIZE_WARNING ? 2 : 3;
 
         int texture = empty || !avatar.hasTexture ? 0 : 3;
         status += texture << 2;
 
-        int script = empty ? 0 : avatar.scriptError ? 1 : avatar.luaRuntime == null ? 0 : avatar.versionStatus > 0 ? 2 : 3;
+        int script = empty ? 0 : avatar.scriptError ? 1 : avatar.luaRuntime == null || !avatar.isLoaded(AvatarLoadPipeline.Stage.SCRIPT) ? 0 : avatar.versionStatus > 0 ? 2 : 3;
         status += script << 4;
 
         int backend = NetworkManager.backendStatus;
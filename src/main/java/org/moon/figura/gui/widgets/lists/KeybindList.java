@@ -82,7 +82,7 @@ public class KeybindList extends AbstractList {
         keybinds.forEach(children::remove);
 
         //add new keybinds
-        if (owner == null || owner.luaRuntime == null)
+        if (owner == null || owner.luaRuntime == null || owner.luaRuntime.keybind == null)
             return;
 
         for (FiguraKeybind keybind : owner.luaRuntime.keybind.keyBindings) {
@@ -4,6 +4,7 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Font;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.HoverEvent;
@@ -88,8 +89,9 @@ public class PlayerElement extends AbstractTrustElement {
             context.addAction(new TextComponent("yoink to cache"), button -> {
                 Avatar a = AvatarManager.getAvatarForPlayer(owner);
                 if (a != null) {
-                    if (a.nbt != null) {
-                        LocalAvatarLoader.saveNbt(a.nbt);
+                    CompoundTag nbt = a.getNbt();
+                    if (nbt != null) {
+                        LocalAvatarLoader.saveNbt(nbt);
                         FiguraToast.sendToast("yoinked");
                     } else {
                         FiguraToast.sendToast("no avatar :(", FiguraToast.ToastType.ERROR);
@@ -140,7 +142,7 @@ public class PlayerElement extends AbstractTrustElement {
 
         Avatar avatar = AvatarManager.getAvatarForPlayer(owner);
         if (avatar != null) {
-            NameplateCustomization custom = avatar.luaRuntime == null ? null : avatar.luaRuntime.nameplate.LIST;
+            NameplateCustomization custom = avatar.luaRuntime == null || avatar.luaRuntime.nameplate == null ? null : avatar.luaRuntime.nameplate.LIST;
             if (custom != null && custom.getText() != null && avatar.trust.get(TrustContainer.Trust.NAMEPLATE_EDIT) == 1)
                 name = NameplateCustomization.applyCustomization(custom.getText());
         }
@@ -159,7 +161,7 @@ public class PlayerElement extends AbstractTrustElement {
         nameLabel.render(stack, mouseX, mouseY, delta);
 
         //status
-        if (avatar != null && avatar.nbt != null) {
+        if (avatar != null && avatar.hasData()) {
             status.tick(); //yes I know
             status.x = x + 40;
             status.y = y + 6 + font.lineHeight;
@@ -16,7 +16,7 @@ import java.util.function.Function;
 public class PlayerStatusWidget extends StatusWidget {
 
 	private static final List<Function<Avatar, MutableComponent>> HOVER_TEXT = List.of(
-			avatar -> new FiguraText("gui.trust.size").append("\n• ").append(MathUtils.asFileSize(avatar.fileSize)),
+			avatar -> new FiguraText("gui.trust.size").append("\n• ").append(MathUtils.asFileSize(avatar.getFileSize())),
 			avatar -> new FiguraText("gui.trust.complexity").append("\n• ").append(String.valueOf(avatar.complexity)),
 			avatar -> new FiguraText("gui.trust.init").append("\n• ").append(new FiguraText("gui.trust.init.root", avatar.initInstructions))
 					.append("\n• ").append(new FiguraText("gui.trust.init.entity", avatar.entityInitInstructions)),
@@ -41,13 +41,14 @@ public class PlayerStatusWidget extends StatusWidget {
 	@Override
 	public void tick() {
 		avatar = AvatarManager.getAvatarForPlayer(owner);
-		if (avatar == null || avatar.nbt == null) {
+		if (avatar == null || !avatar.hasData()) {
 			status = 0;
 			return;
 		}
 
 		//size
-		status = avatar.fileSize > SIZE_LARGE ? 1 : avatar.fileSize > SIZE_WARNING ? 2 : 3;
+		int size = avatar.getFileSize();
+		status = size > SIZE_LARGE ? 1 : size > SIZE_WARNING ? 2 : 3;
 
 		//complexity
 		int complexity = avatar.renderer == null ? 0 : avatar.complexity >= avatar.trust.get(TrustContainer.Trust.COMPLEXITY) ? 1 : 3;
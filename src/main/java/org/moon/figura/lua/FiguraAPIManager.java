@@ -129,7 +129,7 @@ public class FiguraAPIManager {
     }};
 
     public static final Map<String, Function<FiguraLuaRuntime, Object>> API_GETTERS = new LinkedHashMap<>() {{
-        put("events", r -> r.events = new EventsAPI());
+        put("events", r -> r.events);
         put("sounds", r -> new SoundAPI(r.owner));
         put("vanilla_model", r -> r.vanilla_model = new VanillaModelAPI());
         put("keybind", r -> r.keybind = new KeybindAPI(r.owner));
@@ -157,15 +157,16 @@ public class FiguraAPIManager {
         }
     }
 
+    //the apis are only built when a script first uses them, so their runtime fields may be null until then
     public static void setupTypesAndAPIs(FiguraLuaRuntime runtime) {
         for (Class<?> clazz : WHITELISTED_CLASSES)
             runtime.registerClass(clazz);
         for (Map.Entry<String, Function<FiguraLuaRuntime, Object>> entry : API_GETTERS.entrySet())
-            runtime.setGlobal(entry.getKey(), entry.getValue().apply(runtime));
+            runtime.setLazyGlobal(entry.getKey(), entry.getValue());
         for (FiguraAPI api : ENTRYPOINTS) {
             String name = api.getName();
             if (name != null)
-                runtime.setGlobal(name, api.build(runtime.owner));
+                runtime.setLazyGlobal(name, r -> api.build(r.owner));
         }
     }
 }
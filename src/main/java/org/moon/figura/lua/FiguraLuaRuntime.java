@@ -4,10 +4,8 @@ import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.world.entity.Entity;
 import org.luaj.vm2.*;
-import org.luaj.vm2.compiler.LuaC;
 import org.luaj.vm2.lib.*;
 import org.luaj.vm2.lib.jse.JseBaseLib;
-import org.luaj.vm2.lib.jse.JseMathLib;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.Avatar;
 import org.moon.figura.lua.api.action_wheel.ActionWheelAPI;
@@ -20,9 +18,9 @@ import org.moon.figura.lua.api.keybind.KeybindAPI;
 import org.moon.figura.lua.api.nameplate.NameplateAPI;
 import org.moon.figura.lua.api.ping.PingAPI;
 import org.moon.figura.lua.api.vanilla_model.VanillaModelAPI;
+import org.moon.figura.utils.RollingAverage;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -34,10 +32,11 @@ import java.util.function.Function;
 public class FiguraLuaRuntime {
 
     //Global API instances
+    //apart from the events, they are only created when first indexed from lua, so they might be null
     //---------------------------------
     public Entity user;
     public EntityAPI<?> entityAPI;
-    public EventsAPI events;
+    public final EventsAPI events = new EventsAPI();
     public VanillaModelAPI vanilla_model;
     public KeybindAPI keybind;
     public HostAPI host;
@@ -51,36 +50,40 @@ public class FiguraLuaRuntime {
     //---------------------------------
 
     public final Avatar owner;
-    private final Globals userGlobals;
-    private final LuaValue setHookFunction;
+    private final LazyGlobals userGlobals;
     private final LuaTable requireResults = new LuaTable();
-    public final LuaTypeManager typeManager = new LuaTypeManager();
+    public final LuaTypeManager typeManager = new LuaTypeManager(this);
+
+    //time, in nanoseconds, that this runtime took to be created
+    public final long creationTime;
 
     public FiguraLuaRuntime(Avatar avatar) {
+        long time = System.nanoTime();
         owner = avatar;
+        FiguraLuaTemplate template = FiguraLuaTemplate.get();
+
         //Each user gets their own set of globals as well.
-        userGlobals = new Globals();
+        //the base lib is bound to its globals, so it is the only one not shared by the template
+        userGlobals = new LazyGlobals();
         userGlobals.load(new JseBaseLib());
-        userGlobals.load(new Bit32Lib());
-        userGlobals.load(new TableLib());
-        userGlobals.load(new StringLib());
-        userGlobals.load(new JseMathLib());
-
-        LuaC.install(userGlobals);
+        template.install(userGlobals);
 
+        //the debug lib is still needed for the instruction hooks, but scripts should not access it
         userGlobals.load(new DebugLib());
-        setHookFunction = userGlobals.get("debug").get("sethook");
         userGlobals.set("debug", LuaValue.NIL);
 
-        setupFiguraSandbox();
+        setupFiguraSandbox(template);
 
         FiguraAPIManager.setupTypesAndAPIs(this);
 
-        loadExtraLibraries();
+        loadExtraLibraries(template);
 
         LuaTable figuraMetatables = new LuaTable();
         typeManager.dumpMetatables(figuraMetatables);
         setGlobal("figuraMetatables", figuraMetatables);
+
+        creationTime = System.nanoTime() - time;
+        FiguraMod.LOGGER.debug("Created lua runtime for {} in {}ms", owner.owner, creationTime / 1_000_000d);
     }
 
     public void registerClass(Class<?> clazz) {
@@ -94,6 +97,10 @@ public class FiguraLuaRuntime {
             userGlobals.set(name, typeManager.javaToLua(obj));
     }
 
+    public void setLazyGlobal(String name, Function<FiguraLuaRuntime, Object> getter) {
+        userGlobals.lazyValues.put(name, getter);
+    }
+
     public void setUser(Entity user) {
         this.user = user;
         entityAPI = EntityAPI.wrap(user);
@@ -101,17 +108,42 @@ public class FiguraLuaRuntime {
         userGlobals.set("player", userGlobals.get("user"));
     }
 
-    private void setupFiguraSandbox() {
+    private void setupFiguraSandbox(FiguraLuaTemplate template) {
         //actual sandbox file
-        try (InputStream inputStream = FiguraMod.class.getResourceAsStream("/assets/" + FiguraMod.MOD_ID + "/scripts/sandbox.lua")) {
-            if (inputStream == null) throw new IOException("Failed to load sandbox.lua");
-            runScript(new String(inputStream.readAllBytes()), "figura_sandbox");
-        } catch (Exception e) {
-            FiguraLuaPrinter.sendLuaError(new LuaError(e), owner.entityName, owner.owner);
+        LuaValue sandbox = template.getSandbox(userGlobals);
+        if (sandbox == null)
+            FiguraLuaPrinter.sendLuaError(new LuaError("Failed to load sandbox.lua"), owner.entityName, owner.owner);
+        else
+            runChunk(sandbox);
+    }
+
+    /**
+     * Globals that only build their lazy values when they are first indexed.
+     * Setting a lazy global, even to nil, discards its getter.
+     */
+    private class LazyGlobals extends Globals {
+
+        private final Map<String, Function<FiguraLuaRuntime, Object>> lazyValues = new HashMap<>();
+
+        @Override
+        public LuaValue rawget(LuaValue key) {
+            LuaValue value = super.rawget(key);
+            if (value.isnil() && !lazyValues.isEmpty() && key.type() == LuaValue.TSTRING) {
+                Function<FiguraLuaRuntime, Object> getter = lazyValues.remove(key.tojstring());
+                if (getter != null) {
+                    value = typeManager.javaToLua(getter.apply(FiguraLuaRuntime.this));
+                    super.rawset(key, value);
+                }
+            }
+            return value;
         }
 
-        //read only string metatable
-        LuaString.s_metatable = new ReadOnlyLuaTable(LuaString.s_metatable);
+        @Override
+        public void rawset(LuaValue key, LuaValue value) {
+            if (!lazyValues.isEmpty() && key.type() == LuaValue.TSTRING)
+                lazyValues.remove(key.tojstring());
+            super.rawset(key, value);
+        }
     }
 
     private static final Function<FiguraLuaRuntime, LuaValue> LOADSTRING_FUNC = runtime -> new VarArgFunction() {
@@ -130,7 +162,7 @@ public class FiguraLuaRuntime {
             return "function: loadstring";
         }
     };
-    private void loadExtraLibraries() {
+    private void loadExtraLibraries(FiguraLuaTemplate template) {
         //load print functions
         FiguraLuaPrinter.loadPrintFunctions(this);
 
@@ -140,12 +172,11 @@ public class FiguraLuaRuntime {
         this.setGlobal("loadstring", loadstring);
 
         //load math library
-        try (InputStream inputStream = FiguraMod.class.getResourceAsStream("/assets/" + FiguraMod.MOD_ID + "/scripts/math.lua")) {
-            if (inputStream == null) throw new IOException("Failed to load math.lua");
-            runScript(new String(inputStream.readAllBytes()), "math");
-        } catch (Exception e) {
-            FiguraLuaPrinter.sendLuaError(new LuaError(e), owner.entityName, owner.owner);
-        }
+        LuaValue math = template.getMath(userGlobals);
+        if (math == null)
+            FiguraLuaPrinter.sendLuaError(new LuaError("Failed to load math.lua"), owner.entityName, owner.owner);
+        else
+            runChunk(math);
 
         //Change the type() function
         setGlobal("type", new OneArgFunction() {
@@ -198,11 +229,16 @@ public class FiguraLuaRuntime {
     //In the case of an error, this will return null.
     //If there is no error, it returns the LuaValue that the script does.
     public LuaValue runScript(String script, String name) {
-        LuaValue chunk = userGlobals.load(script, name);
+        return runChunk(userGlobals.load(script, name));
+    }
+
+    private LuaValue runChunk(LuaValue chunk) {
         try {
             return chunk.call();
         } catch (LuaError e) {
-            FiguraLuaPrinter.sendLuaError(e, owner.entityName, owner.owner);
+            //limit errors were already reported
+            if (!owner.scriptError)
+                FiguraLuaPrinter.sendLuaError(e, owner.entityName, owner.owner);
             owner.scriptError = true;
             owner.luaRuntime = null;
         }
@@ -214,7 +250,8 @@ public class FiguraLuaRuntime {
             userGlobals.load(code, "runCommand", userGlobals).call();
             return 1;
         } catch (LuaError e) {
-            FiguraLuaPrinter.sendLuaError(e, owner.entityName, owner.owner);
+            if (!owner.scriptError)
+                FiguraLuaPrinter.sendLuaError(e, owner.entityName, owner.owner);
             return 0;
         }
     }
@@ -265,22 +302,98 @@ public class FiguraLuaRuntime {
         @Override
         public LuaValue call() {
             //TODO: translation key for this // cant unless if we do it in a cursed way
-            if (!owner.scriptError) {
-                FiguraLuaPrinter.sendLuaError(new LuaError("Script overran resource limits!"), owner.entityName, owner.owner);
-                owner.scriptError = true;
-                owner.luaRuntime = null;
-            }
-            setInstructionLimit(1);
+            reachedLimit("Script overran resource limits!");
             return LuaValue.NIL;
         }
     };
 
+    //stops the script for good: the error is only reported once, and the hook then throws on every instruction,
+    //so a pcall cannot catch the error and keep running
+    private void reachedLimit(String message) {
+        LuaError error = new LuaError(message);
+        if (!owner.scriptError) {
+            FiguraLuaPrinter.sendLuaError(error, owner.entityName, owner.owner);
+            owner.scriptError = true;
+            owner.luaRuntime = null;
+        }
+        setInstructionLimit(1);
+        throw error;
+    }
+
+    //same as calling debug.sethook(onReachedLimit, "", limit), but without going through lua
     public void setInstructionLimit(int limit) {
-        userGlobals.running.state.bytecodes = 0;
-        setHookFunction.invoke(LuaValue.varargsOf(onReachedLimit, LuaValue.EMPTYSTRING, LuaValue.valueOf(Math.max(limit, 1))));
+        LuaThread.State state = userGlobals.running.state;
+        state.bytecodes = 0;
+        state.hookfunc = onReachedLimit;
+        state.hookcall = state.hookline = state.hookrtrn = false;
+        state.hookcount = Math.max(limit, 1);
     }
 
     public int getInstructions() {
         return userGlobals.running.state.bytecodes;
     }
+
+    // -- cached tables -- //
+
+    private LuaTable players;
+    private int playersVersion;
+
+    //the players only change when someone joins or leaves, so every call in between gets the same read only table
+    public LuaTable getPlayers() {
+        int version = EntityAPI.getPlayersVersion();
+        Map<String, EntityAPI<?>> map = EntityAPI.getPlayers();
+        if (players == null || version != playersVersion) {
+            players = new ReadOnlyLuaTable(typeManager.javaToLua(map));
+            playersVersion = version;
+        }
+        return players;
+    }
+
+    // -- time limits -- //
+
+    //a single slow event, like from a gc pause or a lag spike, does not stop the script,
+    //only going over the limits on average over the last events does
+    private static final int OVERRUN_SAMPLES = 20;
+
+    private final RollingAverage timeUsage = new RollingAverage(OVERRUN_SAMPLES);
+    private long timeStart, timeLimit = -1, timeDeadline = Long.MAX_VALUE, elapsedTime;
+
+    //starts measuring the time of an event, limit in milliseconds, where negative or max int means no limit
+    public void setTimeLimit(int limit) {
+        timeStart = System.nanoTime();
+        if (limit < 0 || limit == Integer.MAX_VALUE) {
+            timeLimit = -1;
+            timeDeadline = Long.MAX_VALUE;
+        } else {
+            //one event alone can use the budget of the whole window
+            timeLimit = Math.max(limit * 1_000_000L, 1L);
+            timeDeadline = timeStart + timeLimit * OVERRUN_SAMPLES;
+        }
+    }
+
+    //called during the event, stops the script if the event alone already used the whole window budget
+    //the deadline is kept, so it keeps failing until the event ends
+    public void checkTimeLimit() {
+        if (System.nanoTime() > timeDeadline)
+            reachedLimit("Script overran time limits!");
+    }
+
+    //stops measuring the event time, and stops the script if the recent events took longer than allowed on average
+    public void endTimeLimit() {
+        long now = System.nanoTime();
+        elapsedTime = now - timeStart;
+        timeDeadline = Long.MAX_VALUE;
+        if (timeLimit < 0)
+            return;
+
+        //stored as the percentage of the limit, so events with different limits share the same window
+        timeUsage.add(elapsedTime * 100 / timeLimit);
+        if (timeUsage.getSum() > 100L * OVERRUN_SAMPLES)
+            reachedLimit("Script overran time limits!");
+    }
+
+    //time in nanoseconds of the last measured event
+    public long getTime() {
+        return elapsedTime;
+    }
 }
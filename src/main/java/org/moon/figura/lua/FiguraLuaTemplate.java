@@ -0,0 +1,141 @@
+package org.moon.figura.lua;
+
+import org.luaj.vm2.*;
+import org.luaj.vm2.compiler.LuaC;
+import org.luaj.vm2.lib.Bit32Lib;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.StringLib;
+import org.luaj.vm2.lib.TableLib;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JseMathLib;
+import org.moon.figura.FiguraMod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The parts of a lua runtime that are the same for every avatar, built only once.
+ * The standard libraries are loaded into a frozen environment, and new runtimes only receive a shallow copy of them,
+ * so each avatar can still edit their own libraries without touching the others.
+ * The bundled scripts are also compiled only once, and each runtime only instantiates a new closure for them.
+ */
+public class FiguraLuaTemplate {
+
+    private static FiguraLuaTemplate instance;
+
+    private final Map<String, LuaTable> libraries = new LinkedHashMap<>();
+    private final Prototype sandbox, math;
+
+    private FiguraLuaTemplate() {
+        //these libraries do not hold any reference to their globals, so they can be shared
+        Globals globals = new Globals();
+        globals.load(new Bit32Lib());
+        globals.load(new TableLib());
+        globals.load(new StringLib());
+        globals.load(new JseMathLib());
+
+        for (String name : new String[]{"bit32", "table", "string", "math"})
+            libraries.put(name, new ReadOnlyLuaTable(globals.get(name)));
+
+        //read only string metatable
+        LuaString.s_metatable = new ReadOnlyLuaTable(LuaString.s_metatable);
+
+        sandbox = compile("sandbox", "figura_sandbox");
+        math = compile("math", "math");
+    }
+
+    public static synchronized FiguraLuaTemplate get() {
+        if (instance == null) {
+            long time = System.nanoTime();
+            instance = new FiguraLuaTemplate();
+            FiguraMod.LOGGER.debug("Built lua template in {}ms", (System.nanoTime() - time) / 1_000_000d);
+        }
+        return instance;
+    }
+
+    //copies the frozen libraries into the given globals
+    public void install(Globals globals) {
+        for (Map.Entry<String, LuaTable> entry : libraries.entrySet())
+            globals.set(entry.getKey(), copy(entry.getValue()));
+
+        //each avatar needs its own random, otherwise they could reseed the others
+        LuaValue mathTable = globals.get("math");
+        Random random = new Random();
+        mathTable.set("random", new MathRandom(random));
+        mathTable.set("randomseed", new MathRandomSeed(random));
+
+        LuaC.install(globals);
+    }
+
+    public LuaValue getSandbox(Globals globals) {
+        return sandbox == null ? null : new LuaClosure(sandbox, globals);
+    }
+
+    public LuaValue getMath(Globals globals) {
+        return math == null ? null : new LuaClosure(math, globals);
+    }
+
+    private static LuaTable copy(LuaTable table) {
+        LuaTable copy = new LuaTable();
+        for (Varargs n = table.next(LuaValue.NIL); !n.arg1().isnil(); n = table.next(n.arg1()))
+            copy.rawset(n.arg1(), n.arg(2));
+        return copy;
+    }
+
+    private static Prototype compile(String name, String chunkName) {
+        try (InputStream inputStream = FiguraMod.class.getResourceAsStream("/assets/" + FiguraMod.MOD_ID + "/scripts/" + name + ".lua")) {
+            if (inputStream == null) throw new IOException("Failed to load " + name + ".lua");
+            return LuaC.instance.compile(inputStream, chunkName);
+        } catch (Exception e) {
+            FiguraMod.LOGGER.error("Failed to compile " + name + ".lua", e);
+            return null;
+        }
+    }
+
+    //same behaviour as the lua math.random and math.randomseed, but using a per runtime random
+    private static class MathRandom extends VarArgFunction {
+
+        private final Random random;
+
+        public MathRandom(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public Varargs invoke(Varargs args) {
+            switch (args.narg()) {
+                case 0:
+                    return valueOf(random.nextDouble());
+                case 1: {
+                    int m = args.checkint(1);
+                    if (m < 1) argerror(1, "interval is empty");
+                    return valueOf(1 + random.nextInt(m));
+                }
+                default: {
+                    int m = args.checkint(1);
+                    int n = args.checkint(2);
+                    if (n < m) argerror(2, "interval is empty");
+                    return valueOf(m + random.nextInt(n + 1 - m));
+                }
+            }
+        }
+    }
+
+    private static class MathRandomSeed extends OneArgFunction {
+
+        private final Random random;
+
+        public MathRandomSeed(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public LuaValue call(LuaValue arg) {
+            random.setSeed(arg.checklong());
+            return NIL;
+        }
+    }
+}
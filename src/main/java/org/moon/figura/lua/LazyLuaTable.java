@@ -0,0 +1,103 @@
+package org.moon.figura.lua;
+
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+
+/**
+ * A lua table whose values are only built when they are first indexed.
+ * Anything that needs to see the whole table (iteration, length, writes, sorting) loads every remaining key first,
+ * so from lua it behaves exactly like a table that was filled upfront.
+ */
+public abstract class LazyLuaTable extends LuaTable {
+
+    private boolean loaded;
+
+    public LazyLuaTable() {
+        super();
+    }
+
+    public LazyLuaTable(int narray, int nhash) {
+        super(narray, nhash);
+    }
+
+    //builds the value of a single key, or null if the key does not exist
+    protected abstract LuaValue load(LuaValue key);
+
+    //every key this table can load
+    protected abstract Iterable<LuaValue> getLazyKeys();
+
+    //loads all keys that were not indexed yet
+    protected void loadAll() {
+        if (loaded)
+            return;
+
+        loaded = true;
+        for (LuaValue key : getLazyKeys()) {
+            if (!super.rawget(key).isnil())
+                continue;
+
+            LuaValue value = load(key);
+            if (value != null)
+                super.rawset(key, value);
+        }
+    }
+
+    @Override
+    public LuaValue rawget(LuaValue key) {
+        LuaValue value = super.rawget(key);
+        if (loaded || !value.isnil())
+            return value;
+
+        LuaValue lazy = load(key);
+        if (lazy == null)
+            return NIL;
+
+        super.rawset(key, lazy);
+        return lazy;
+    }
+
+    @Override
+    public LuaValue rawget(int key) {
+        LuaValue value = super.rawget(key);
+        if (loaded || !value.isnil())
+            return value;
+
+        LuaValue lazy = load(LuaValue.valueOf(key));
+        if (lazy == null)
+            return NIL;
+
+        super.rawset(key, lazy);
+        return lazy;
+    }
+
+    @Override
+    public void rawset(LuaValue key, LuaValue value) {
+        loadAll();
+        super.rawset(key, value);
+    }
+
+    @Override
+    public void rawset(int key, LuaValue value) {
+        loadAll();
+        super.rawset(key, value);
+    }
+
+    @Override
+    public Varargs next(LuaValue key) {
+        loadAll();
+        return super.next(key);
+    }
+
+    @Override
+    public int rawlen() {
+        loadAll();
+        return super.rawlen();
+    }
+
+    @Override
+    public void sort(LuaValue comparator) {
+        loadAll();
+        super.sort(comparator);
+    }
+}
@@ -0,0 +1,85 @@
+package org.moon.figura.lua;
+
+import org.luaj.vm2.LuaString;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of java strings converted to lua.
+ * Converting a string encodes it again and allocates a new LuaString every time,
+ * while the API keeps returning the same names and ids, so those are shared between every runtime.
+ * When full, the oldest strings not used since they were last checked are evicted (second chance),
+ * so the often used names survive the one off ones, like chat messages.
+ */
+public class LuaStringCache {
+
+    private static final int MAX_SIZE = 4096;
+    private static final int MAX_LENGTH = 64;
+
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+    //insertion order of the keys, only touched while holding the lock
+    private static final Queue<String> ORDER = new ArrayDeque<>();
+    //updated from the load pipeline, tick and render threads
+    private static final LongAdder HITS = new LongAdder(), MISSES = new LongAdder();
+
+    private static final class Entry {
+        private final LuaString value;
+        private volatile boolean used;
+
+        private Entry(LuaString value) {
+            this.value = value;
+        }
+    }
+
+    public static LuaString valueOf(String string) {
+        //long strings are rarely repeated, not worth keeping
+        if (string.length() > MAX_LENGTH)
+            return LuaString.valueOf(string);
+
+        Entry cached = CACHE.get(string);
+        if (cached != null) {
+            cached.used = true;
+            HITS.increment();
+            return cached.value;
+        }
+
+        MISSES.increment();
+        LuaString value = LuaString.valueOf(string);
+        add(string, value);
+        return value;
+    }
+
+    private static synchronized void add(String string, LuaString value) {
+        if (CACHE.putIfAbsent(string, new Entry(value)) != null)
+            return;
+        ORDER.add(string);
+
+        //used strings get a second chance at the end of the queue, ends after at most one full pass
+        while (CACHE.size() > MAX_SIZE) {
+            String key = ORDER.poll();
+            Entry entry = CACHE.get(key);
+            if (entry.used) {
+                entry.used = false;
+                ORDER.add(key);
+            } else {
+                CACHE.remove(key);
+            }
+        }
+    }
+
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    public static int getSize() {
+        return CACHE.size();
+    }
+}
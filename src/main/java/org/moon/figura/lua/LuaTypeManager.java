@@ -1,9 +1,14 @@
 package org.moon.figura.lua;
 
+import com.google.common.collect.MapMaker;
 import org.luaj.vm2.*;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.TwoArgFunction;
 import org.luaj.vm2.lib.VarArgFunction;
+import org.moon.figura.avatars.Avatar;
+import org.moon.figura.avatars.model.FiguraModelPart;
+import org.moon.figura.avatars.model.rendertasks.RenderTask;
+import org.moon.figura.lua.api.entity.EntityAPI;
 import org.moon.figura.lua.docs.FiguraDocsManager;
 import org.moon.figura.lua.docs.LuaTypeDoc;
 
@@ -11,16 +16,26 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * One LuaTypeManager per LuaRuntime, so that people can be allowed to edit the metatables within.
+ * The reflected layout of the metatables is shared by every runtime, only the tables and bound functions are created per runtime.
  */
 public class LuaTypeManager {
 
     private final Map<Class<?>, LuaTable> metatables = new HashMap<>();
+    private final FiguraLuaRuntime runtime;
+
+    public LuaTypeManager(FiguraLuaRuntime runtime) {
+        this.runtime = runtime;
+    }
 
     public void generateMetatableFor(Class<?> clazz) {
         if (metatables.containsKey(clazz))
@@ -33,54 +48,37 @@ public class LuaTypeManager {
             generateMetatableFor(clazz.getSuperclass());
         } catch (IllegalArgumentException ignored) {}
 
+        MetatableTemplate template = getTemplate(clazz);
         LuaTable metatable = new LuaTable();
 
         LuaTable indexTable = new LuaTable();
-        Class<?> currentClass = clazz;
-        while (currentClass.isAnnotationPresent(LuaWhitelist.class)) {
-            for (Method method : currentClass.getDeclaredMethods()) {
-                if (!method.isAnnotationPresent(LuaWhitelist.class)) {
-                    continue;
-                }
-                String name = method.getName();
-                if (name.startsWith("__")) { //metamethods
-                    if (metatable.rawget(name) == LuaValue.NIL) { //Only add the most recently declared metamethod, in the most specific subclass.
-                        if (name.equals("__index")) {
-                            //Custom __index implementation. First checks the regular __index table, and if it gets NIL, then calls the custom-defined __index function.
-                            metatable.set("__index", new TwoArgFunction() {
-                                final LuaFunction wrappedIndexer = getWrapper(method);
-                                @Override
-                                public LuaValue call(LuaValue arg1, LuaValue arg2) {
-                                    LuaValue result = indexTable.get(arg2);
-                                    if (result == LuaValue.NIL)
-                                        result = wrappedIndexer.call(arg1, arg2);
-                                    return result;
-                                }
-                            });
-                        } else {
-                            metatable.set(name, getWrapper(method));
-                        }
+        for (Map.Entry<String, LuaMethod> entry : template.index.entrySet())
+            indexTable.set(entry.getKey(), entry.getValue().bind(this));
+
+        for (Map.Entry<String, LuaMethod> entry : template.metamethods.entrySet()) {
+            if (entry.getKey().equals("__index")) {
+                //Custom __index implementation. First checks the regular __index table, and if it gets NIL, then calls the custom-defined __index function.
+                metatable.set("__index", new TwoArgFunction() {
+                    final LuaFunction wrappedIndexer = entry.getValue().bind(LuaTypeManager.this);
+                    @Override
+                    public LuaValue call(LuaValue arg1, LuaValue arg2) {
+                        LuaValue result = indexTable.get(arg2);
+                        if (result == LuaValue.NIL)
+                            result = wrappedIndexer.call(arg1, arg2);
+                        return result;
                     }
-                } else { //regular methods
-                    indexTable.set(name, getWrapper(method));
-                }
+                });
+            } else {
+                metatable.set(entry.getKey(), entry.getValue().bind(this));
             }
-            currentClass = currentClass.getSuperclass();
         }
 
         if (metatable.rawget("__index") == LuaValue.NIL)
             metatable.set("__index", indexTable);
 
         //if we don't have a special toString, then have our toString give the type name from the annotation
-        if (metatable.rawget("__tostring") == LuaValue.NIL) {
-            metatable.set("__tostring", new OneArgFunction() {
-                private final LuaString val = LuaString.valueOf(clazz.getName());
-                @Override
-                public LuaValue call(LuaValue arg) {
-                    return val;
-                }
-            });
-        }
+        if (metatable.rawget("__tostring") == LuaValue.NIL)
+            metatable.set("__tostring", template.typeName);
 
         //if we don't have a special __index, then have our indexer look in the next metatable up in the java inheritance.
         if (indexTable.rawget("__index") == LuaValue.NIL) {
@@ -93,6 +91,57 @@ public class LuaTypeManager {
         }
 
         metatables.put(clazz, metatable);
+        resolvedMetatables.clear();
+    }
+
+    //reflection is slow, so the whitelisted methods are only looked up once, and then shared by every runtime
+    private static final Map<Class<?>, List<Method>> WHITELISTED_METHODS = new ConcurrentHashMap<>();
+
+    private static List<Method> getWhitelistedMethods(Class<?> clazz) {
+        return WHITELISTED_METHODS.computeIfAbsent(clazz, someClass -> {
+            List<Method> list = new ArrayList<>();
+            for (Method method : someClass.getDeclaredMethods())
+                if (method.isAnnotationPresent(LuaWhitelist.class))
+                    list.add(method);
+            return list;
+        });
+    }
+
+    //the layout of a class metatable does not depend on the runtime, so the reflection is done only once
+    private record MetatableTemplate(Map<String, LuaMethod> index, Map<String, LuaMethod> metamethods, LuaFunction typeName) {}
+
+    private static final Map<Class<?>, MetatableTemplate> TEMPLATES = new ConcurrentHashMap<>();
+    private static final Map<Method, LuaMethod> METHODS = new ConcurrentHashMap<>();
+
+    private static MetatableTemplate getTemplate(Class<?> clazz) {
+        return TEMPLATES.computeIfAbsent(clazz, someClass -> {
+            Map<String, LuaMethod> index = new LinkedHashMap<>();
+            Map<String, LuaMethod> metamethods = new LinkedHashMap<>();
+
+            Class<?> currentClass = someClass;
+            while (currentClass.isAnnotationPresent(LuaWhitelist.class)) {
+                for (Method method : getWhitelistedMethods(currentClass)) {
+                    String name = method.getName();
+                    if (name.startsWith("__")) //Only add the most recently declared metamethod, in the most specific subclass.
+                        metamethods.putIfAbsent(name, getMethod(method));
+                    else
+                        index.put(name, getMethod(method));
+                }
+                currentClass = currentClass.getSuperclass();
+            }
+
+            LuaString name = LuaString.valueOf(someClass.getName());
+            return new MetatableTemplate(index, metamethods, new OneArgFunction() {
+                @Override
+                public LuaValue call(LuaValue arg) {
+                    return name;
+                }
+            });
+        });
+    }
+
+    private static LuaMethod getMethod(Method method) {
+        return METHODS.computeIfAbsent(method, LuaMethod::new);
     }
 
     public void dumpMetatables(LuaTable table) {
@@ -125,96 +174,161 @@ public class LuaTypeManager {
     }
 
     public VarArgFunction getWrapper(Method method) {
-        return new VarArgFunction() {
-
-            private final boolean isStatic = Modifier.isStatic(method.getModifiers());
-            private Object caller;
-
+        return getMethod(method).bind(this);
+    }
 
-            private final Class<?> clazz = method.getDeclaringClass();
-            private final Class<?>[] argumentTypes = method.getParameterTypes();
-            private final Object[] actualArgs = new Object[argumentTypes.length];
-            private final boolean[] requiredNotNil = getRequiredNotNil(method);
+    //the parts of a wrapper that only depend on the method
+    private static class LuaMethod {
+
+        private final Method method;
+        private final boolean isStatic;
+        //static methods can take the calling avatar as their first parameter, which is not a lua argument
+        private final boolean injectsAvatar;
+        private final Class<?> clazz;
+        private final Class<?>[] argumentTypes;
+        private final boolean[] requiredNotNil;
+
+        private LuaMethod(Method method) {
+            this.method = method;
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+            this.clazz = method.getDeclaringClass();
+            this.argumentTypes = method.getParameterTypes();
+            this.requiredNotNil = getRequiredNotNil(method);
+            this.injectsAvatar = isStatic && argumentTypes.length > 0 && argumentTypes[0] == Avatar.class;
+        }
 
-            @Override
-            public Varargs invoke(Varargs args) {
+        private VarArgFunction bind(LuaTypeManager typeManager) {
+            return new VarArgFunction() {
 
-                if (!isStatic)
-                    caller = args.checkuserdata(1, clazz);
+                private Object caller;
+                private final Object[] actualArgs = new Object[argumentTypes.length];
 
-                //Fill in actualArgs from args
-                for (int i = 0; i < argumentTypes.length; i++) {
-                    int argIndex = i + (isStatic ? 1 : 2);
-                    boolean nil = args.isnil(argIndex);
-                    if (nil && requiredNotNil[i])
-                        throw new LuaError("bad argument: " + method.getName() + " " + argIndex + " do not allow nil values, expected " + FiguraDocsManager.getNameFor(argumentTypes[i]));
-                    if (argIndex <= args.narg() && !nil) {
-                        try {
+                @Override
+                public Varargs invoke(Varargs args) {
+
+                    if (!isStatic)
+                        caller = args.checkuserdata(1, clazz);
+
+                    if (injectsAvatar)
+                        actualArgs[0] = typeManager.runtime.owner;
+
+                    //Fill in actualArgs from args
+                    for (int i = injectsAvatar ? 1 : 0; i < argumentTypes.length; i++) {
+                        int argIndex = i + (isStatic ? 1 : 2) - (injectsAvatar ? 1 : 0);
+                        boolean nil = args.isnil(argIndex);
+                        if (nil && requiredNotNil[i])
+                            throw new LuaError("bad argument: " + method.getName() + " " + argIndex + " do not allow nil values, expected " + FiguraDocsManager.getNameFor(argumentTypes[i]));
+                        if (argIndex <= args.narg() && !nil) {
+                            try {
+                                actualArgs[i] = switch (argumentTypes[i].getName()) {
+                                    case "java.lang.Number", "java.lang.Double", "double" -> args.checkdouble(argIndex);
+                                    case "java.lang.String" -> args.checkjstring(argIndex);
+                                    case "java.lang.Boolean", "boolean" -> args.toboolean(argIndex);
+                                    case "java.lang.Float", "float" -> (float) args.checkdouble(argIndex);
+                                    case "java.lang.Integer", "int" -> args.checkint(argIndex);
+                                    case "java.lang.Long", "long" -> args.checklong(argIndex);
+                                    case "org.luaj.vm2.LuaTable" -> args.checktable(argIndex);
+                                    case "org.luaj.vm2.LuaFunction" -> args.checkfunction(argIndex);
+                                    case "org.luaj.vm2.LuaValue" -> args.arg(argIndex);
+                                    case "java.lang.Object" -> typeManager.luaToJava(args.arg(argIndex));
+                                    default -> args.checkuserdata(argIndex, argumentTypes[i]);
+                                };
+                            } catch (LuaError err) {
+                                String expectedType = FiguraDocsManager.getNameFor(argumentTypes[i]);
+                                String actualType;
+                                if (args.arg(argIndex).type() == LuaValue.TUSERDATA)
+                                    actualType = FiguraDocsManager.getNameFor(args.arg(argIndex).checkuserdata().getClass());
+                                else
+                                    actualType = args.arg(argIndex).typename();
+                                throw new LuaError("Invalid argument " + argIndex + " to function " + method.getName() + ". Expected " + expectedType + ", but got " + actualType);
+                            }
+                        } else {
                             actualArgs[i] = switch (argumentTypes[i].getName()) {
-                                case "java.lang.Number", "java.lang.Double", "double" -> args.checkdouble(argIndex);
-                                case "java.lang.String" -> args.checkjstring(argIndex);
-                                case "java.lang.Boolean", "boolean" -> args.toboolean(argIndex);
-                                case "java.lang.Float", "float" -> (float) args.checkdouble(argIndex);
-                                case "java.lang.Integer", "int" -> args.checkint(argIndex);
-                                case "java.lang.Long", "long" -> args.checklong(argIndex);
-                                case "org.luaj.vm2.LuaTable" -> args.checktable(argIndex);
-                                case "org.luaj.vm2.LuaFunction" -> args.checkfunction(argIndex);
-                                case "org.luaj.vm2.LuaValue" -> args.arg(argIndex);
-                                case "java.lang.Object" -> luaToJava(args.arg(argIndex));
-                                default -> args.checkuserdata(argIndex, argumentTypes[i]);
+                                case "double" -> 0D;
+                                case "int" -> 0;
+                                case "long" -> 0L;
+                                case "float" -> 0f;
+                                case "boolean" -> false;
+                                default -> null;
                             };
-                        } catch (LuaError err) {
-                            String expectedType = FiguraDocsManager.getNameFor(argumentTypes[i]);
-                            String actualType;
-                            if (args.arg(argIndex).type() == LuaValue.TUSERDATA)
-                                actualType = FiguraDocsManager.getNameFor(args.arg(argIndex).checkuserdata().getClass());
-                            else
-                                actualType = args.arg(argIndex).typename();
-                            throw new LuaError("Invalid argument " + argIndex + " to function " + method.getName() + ". Expected " + expectedType + ", but got " + actualType);
                         }
-                    } else {
-                        actualArgs[i] = switch (argumentTypes[i].getName()) {
-                            case "double" -> 0D;
-                            case "int" -> 0;
-                            case "long" -> 0L;
-                            case "float" -> 0f;
-                            case "boolean" -> false;
-                            default -> null;
-                        };
                     }
+
+                    //Invoke the wrapped method
+                    Object result;
+                    try {
+                        result = method.invoke(caller, actualArgs);
+                    } catch (IllegalAccessException | InvocationTargetException e) {
+                        throw e.getCause() instanceof LuaError l ? l : new LuaError(e.getCause());
+                    }
+
+                    //java calls count against the event time budget
+                    typeManager.runtime.checkTimeLimit();
+
+                    //Convert the return value
+                    return typeManager.javaToLua(result);
                 }
 
-                //Invoke the wrapped method
-                Object result;
-                try {
-                    result = method.invoke(caller, actualArgs);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    throw e.getCause() instanceof LuaError l ? l : new LuaError(e.getCause());
+                @Override
+                public String tojstring() {
+                    return "function: " + method.getName();
                 }
+            };
+        }
+    }
 
-                //Convert the return value
-                return javaToLua(result);
-            }
+    /**
+     * Long living objects, which are returned to lua over and over again, like model parts and entities,
+     * are wrapped only once, and then their userdata is reused while both are still reachable.
+     * Short living values (like vectors) are always copies, so they are never cached.
+     */
+    private static final Set<Class<?>> CACHED_WRAPPERS = Set.of(FiguraModelPart.class, EntityAPI.class, RenderTask.class);
 
-            @Override
-            public String tojstring() {
-                return "function: " + method.getName();
-            }
-        };
-    }
+    private final Map<Class<?>, LuaTable> resolvedMetatables = new HashMap<>();
+    private final Map<Class<?>, Boolean> cachedClasses = new HashMap<>();
+    private final Map<Object, LuaUserdata> wrapperCache = new MapMaker().weakKeys().weakValues().makeMap();
 
-    private LuaValue wrap(Object instance) {
-        Class<?> clazz = instance.getClass();
+    private LuaTable getMetatable(Class<?> instanceClass) {
+        LuaTable cached = resolvedMetatables.get(instanceClass);
+        if (cached != null)
+            return cached;
+
+        Class<?> clazz = instanceClass;
         LuaTable metatable = metatables.get(clazz);
         while (metatable == null) {
             clazz = clazz.getSuperclass();
             if (clazz == Object.class)
-                throw new RuntimeException("Attempt to wrap illegal type " + instance.getClass().getName() + " (not registered in LuaTypeManager's \"metatables\" map)!");
+                throw new RuntimeException("Attempt to wrap illegal type " + instanceClass.getName() + " (not registered in LuaTypeManager's \"metatables\" map)!");
             metatable = metatables.get(clazz);
         }
 
+        resolvedMetatables.put(instanceClass, metatable);
+        return metatable;
+    }
+
+    private boolean shouldCacheWrapper(Class<?> instanceClass) {
+        return cachedClasses.computeIfAbsent(instanceClass, clazz -> {
+            for (Class<?> cached : CACHED_WRAPPERS)
+                if (cached.isAssignableFrom(clazz))
+                    return true;
+            return false;
+        });
+    }
+
+    private LuaValue wrap(Object instance) {
+        Class<?> clazz = instance.getClass();
+        boolean cache = shouldCacheWrapper(clazz);
+        if (cache) {
+            LuaUserdata cached = wrapperCache.get(instance);
+            if (cached != null)
+                return cached;
+        }
+
         LuaUserdata result = new LuaUserdata(instance);
-        result.setmetatable(metatable);
+        result.setmetatable(getMetatable(clazz));
+
+        if (cache)
+            wrapperCache.put(instance, result);
         return result;
     }
 
@@ -271,7 +385,7 @@ public class LuaTypeManager {
         else if (val instanceof Double d)
             return LuaValue.valueOf(d);
         else if (val instanceof String s)
-            return LuaValue.valueOf(s);
+            return LuaStringCache.valueOf(s);
         else if (val instanceof Boolean b)
             return LuaValue.valueOf(b);
         else if (val instanceof Integer i)
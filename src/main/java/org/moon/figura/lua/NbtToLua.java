@@ -4,7 +4,9 @@ import net.minecraft.nbt.*;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.function.Function;
 
 public class NbtToLua {
@@ -59,4 +61,63 @@ public class NbtToLua {
 
         return builder.apply(tag);
     }
+
+    //same as convert, but compounds and collections are only converted when their children are indexed
+    public static LuaValue lazy(Tag tag) {
+        if (tag instanceof CompoundTag compound)
+            return new LazyCompound(compound);
+        if (tag instanceof CollectionTag<?> collection)
+            return new LazyCollection(collection);
+        return convert(tag);
+    }
+
+    private static class LazyCompound extends LazyLuaTable {
+
+        private final CompoundTag compound;
+
+        public LazyCompound(CompoundTag compound) {
+            this.compound = compound;
+        }
+
+        @Override
+        protected LuaValue load(LuaValue key) {
+            if (key.type() != LuaValue.TSTRING)
+                return null;
+            return lazy(compound.get(key.tojstring()));
+        }
+
+        @Override
+        protected Iterable<LuaValue> getLazyKeys() {
+            List<LuaValue> keys = new ArrayList<>();
+            for (String key : compound.getAllKeys())
+                keys.add(LuaValue.valueOf(key));
+            return keys;
+        }
+    }
+
+    private static class LazyCollection extends LazyLuaTable {
+
+        private final CollectionTag<?> collection;
+
+        public LazyCollection(CollectionTag<?> collection) {
+            super(collection.size(), 0);
+            this.collection = collection;
+        }
+
+        @Override
+        protected LuaValue load(LuaValue key) {
+            if (!key.isinttype())
+                return null;
+            int i = key.toint();
+            return i < 1 || i > collection.size() ? null : lazy(collection.get(i - 1));
+        }
+
+        @Override
+        protected Iterable<LuaValue> getLazyKeys() {
+            List<LuaValue> keys = new ArrayList<>();
+            for (int i = 1; i <= collection.size(); i++)
+                keys.add(LuaValue.valueOf(i));
+            return keys;
+        }
+    }
 }
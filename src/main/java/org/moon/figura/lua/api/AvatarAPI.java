@@ -1,6 +1,5 @@
 package org.moon.figura.lua.api;
 
-import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.moon.figura.avatars.Avatar;
 import org.moon.figura.lua.LuaNotNil;
@@ -21,7 +20,6 @@ import org.moon.figura.utils.LuaUtils;
 public class AvatarAPI {
 
     private final Avatar avatar;
-    public final LuaTable storedStuff = new LuaTable();
 
     public AvatarAPI(Avatar avatar) {
         this.avatar = avatar;
@@ -36,7 +34,10 @@ public class AvatarAPI {
             value = "avatar.store"
     )
     public void store(@LuaNotNil String key, LuaValue value) {
-        storedStuff.set(key, value == null ? LuaValue.NIL : value);
+        int limit = avatar.trust.get(TrustContainer.Trust.STORED_VARIABLES);
+        if (TrustContainer.Trust.STORED_VARIABLES.checkInfinity(limit))
+            limit = Integer.MAX_VALUE;
+        avatar.variables.store(key, value == null ? LuaValue.NIL : value, limit);
     }
 
     @LuaWhitelist
@@ -92,7 +93,7 @@ public class AvatarAPI {
     @LuaWhitelist
     @LuaMethodDoc("avatar.get_size")
     public double getSize() {
-        return avatar.fileSize;
+        return avatar.getFileSize();
     }
 
     @LuaWhitelist
@@ -143,12 +143,12 @@ public class ActionWheelAPI {
 
         //execute
         if (function != null)
-            avatar.tryCall(function, -1);
+            avatar.tryCall(function, -1, -1);
     }
 
     public void mouseScroll(Avatar avatar, double delta) {
         if (scroll != null)
-            avatar.tryCall(scroll, -1, delta);
+            avatar.tryCall(scroll, -1, -1, delta);
     }
 
     @LuaWhitelist
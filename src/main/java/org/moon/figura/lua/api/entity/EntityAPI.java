@@ -1,5 +1,6 @@
 package org.moon.figura.lua.api.entity;
 
+import com.google.common.collect.MapMaker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Registry;
@@ -10,6 +11,7 @@ import net.minecraft.world.entity.EntityDimensions;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.HitResult;
 import net.minecraft.world.phys.Vec3;
@@ -30,7 +32,10 @@ import org.moon.figura.math.vector.FiguraVec2;
 import org.moon.figura.math.vector.FiguraVec3;
 import org.moon.figura.utils.EntityUtils;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @LuaWhitelist
 @LuaTypeDoc(
@@ -50,14 +55,85 @@ public class EntityAPI<T extends Entity> {
         entityUUID = entity.getUUID();
     }
 
+    // -- wrapper cache -- //
+
+    //wrappers are shared by every avatar, and forgotten when their entity is unloaded
+    //both maps are concurrent, since scripts are also initialised outside of the main thread
+    private static final Map<UUID, EntityAPI<?>> WRAPPERS = new MapMaker().weakValues().makeMap();
+
+    //loaded players indexed by name, kept up to date by the entity load events
+    private static final Map<String, EntityAPI<?>> PLAYERS = new ConcurrentHashMap<>();
+    private static final Map<String, EntityAPI<?>> PLAYERS_VIEW = Collections.unmodifiableMap(PLAYERS);
+    private static Level playersLevel;
+    //bumped on every change of the players, so the tables built from them know when to be rebuilt
+    private static volatile int playersVersion;
+
     public static EntityAPI<?> wrap(Entity e) {
         if (e == null)
             return null;
+
+        EntityAPI<?> cached = WRAPPERS.get(e.getUUID());
+        if (cached != null && cached.entity == e)
+            return cached;
+
+        EntityAPI<?> wrapper;
         if (e instanceof Player p)
-            return new PlayerAPI(p);
-        if (e instanceof LivingEntity le)
-            return new LivingEntityAPI<>(le);
-        return new EntityAPI<>(e);
+            wrapper = new PlayerAPI(p);
+        else if (e instanceof LivingEntity le)
+            wrapper = new LivingEntityAPI<>(le);
+        else
+            wrapper = new EntityAPI<>(e);
+
+        WRAPPERS.put(e.getUUID(), wrapper);
+        return wrapper;
+    }
+
+    public static synchronized Map<String, EntityAPI<?>> getPlayers() {
+        //rebuild the registry when the world changes
+        Level level = WorldAPI.getCurrentWorld();
+        if (level != playersLevel) {
+            PLAYERS.clear();
+            playersLevel = level;
+            playersVersion++;
+            if (level != null) {
+                for (Player player : level.players())
+                    PLAYERS.put(player.getName().getString(), wrap(player));
+            }
+        }
+
+        return PLAYERS_VIEW;
+    }
+
+    public static synchronized void onEntityLoad(Entity entity, Level level) {
+        if (entity instanceof Player && level == playersLevel) {
+            PLAYERS.put(entity.getName().getString(), wrap(entity));
+            playersVersion++;
+        }
+    }
+
+    public static synchronized void onEntityUnload(Entity entity, Level level) {
+        EntityAPI<?> cached = WRAPPERS.get(entity.getUUID());
+        if (cached != null && cached.entity == entity)
+            WRAPPERS.remove(entity.getUUID());
+
+        if (entity instanceof Player && level == playersLevel) {
+            EntityAPI<?> player = PLAYERS.get(entity.getName().getString());
+            if (player != null && player.entity == entity) {
+                PLAYERS.remove(entity.getName().getString());
+                playersVersion++;
+            }
+        }
+    }
+
+    //called when leaving the world, so the old players are not kept around until the next query
+    public static synchronized void clearPlayers() {
+        PLAYERS.clear();
+        playersLevel = null;
+        playersVersion++;
+    }
+
+    public static int getPlayersVersion() {
+        return playersVersion;
     }
 
     protected final void checkEntity() {
@@ -337,7 +413,7 @@ public class EntityAPI<T extends Entity> {
         checkEntity();
         CompoundTag tag = new CompoundTag();
         entity.saveWithoutId(tag);
-        return (LuaTable) NbtToLua.convert(tag);
+        return (LuaTable) NbtToLua.lazy(tag);
     }
 
     @LuaWhitelist
@@ -385,9 +461,15 @@ public class EntityAPI<T extends Entity> {
     public LuaValue getVariable(String key) {
         checkEntity();
         Avatar a = AvatarManager.getAvatar(entity);
-        if (a == null || a.luaRuntime == null)
-            return null;
-        return a.luaRuntime.avatar_meta.storedStuff.get(key);
+        return a == null ? null : a.variables.get(key);
+    }
+
+    @LuaWhitelist
+    @LuaMethodDoc("entity.get_variables_version")
+    public Integer getVariablesVersion() {
+        checkEntity();
+        Avatar a = AvatarManager.getAvatar(entity);
+        return a == null ? null : a.variables.getVersion();
     }
 
     @LuaWhitelist
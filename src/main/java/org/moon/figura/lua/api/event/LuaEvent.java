@@ -40,6 +40,11 @@ public class LuaEvent {
         queue.clear();
     }
 
+    //Whether there is nothing to call, so callers can skip building arguments for this event.
+    public boolean isEmpty() {
+        return functions.isEmpty() && queue.isEmpty();
+    }
+
     //Calls all the functions in the order they were registered, using the given args for all calls.
     public void call(Varargs args) {
         flushQueue();
@@ -2,7 +2,10 @@ package org.moon.figura.lua.api.ping;
 
 import org.luaj.vm2.LuaFunction;
 import org.moon.figura.avatars.Avatar;
+import org.moon.figura.lua.LuaNotNil;
 import org.moon.figura.lua.LuaWhitelist;
+import org.moon.figura.lua.docs.LuaFunctionOverload;
+import org.moon.figura.lua.docs.LuaMethodDoc;
 import org.moon.figura.lua.docs.LuaTypeDoc;
 
 import java.util.HashMap;
@@ -37,12 +40,27 @@ public class PingAPI {
         return get(arg);
     }
 
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = @LuaFunctionOverload(
+                    argumentTypes = {String.class, LuaFunction.class},
+                    argumentNames = {"name", "func"}
+            ),
+            value = "pings.new_state"
+    )
+    public void newState(@LuaNotNil String name, @LuaNotNil LuaFunction func) {
+        register(name, new StatePingFunction(id, owner, func));
+    }
+
     @LuaWhitelist
     public void __newindex(String key, LuaFunction value) {
         if (key == null) return;
-        PingFunction func = new PingFunction(id, owner, value);
-        map.put(key, func);
-        idMap.put(id, key);
+        register(key, new PingFunction(id, owner, value));
+    }
+
+    private void register(String name, PingFunction func) {
+        map.put(name, func);
+        idMap.put(id, name);
         id++;
     }
 
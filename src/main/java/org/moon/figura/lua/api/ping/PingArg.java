@@ -6,16 +6,21 @@ import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.Varargs;
 import org.moon.figura.FiguraMod;
 import org.moon.figura.avatars.Avatar;
+import org.moon.figura.backend.NetworkManager;
+import org.moon.figura.lua.LuaTypeManager;
 import org.moon.figura.math.matrix.FiguraMatrix;
 import org.moon.figura.math.vector.FiguraVector;
 import org.moon.figura.utils.MathUtils;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PingArg {
 
+    //v1 types, used when the backend did not agree to the v2 format
     private static final int
             NIL = 0,
             BOOL = 1,
@@ -26,6 +31,28 @@ public class PingArg {
             VECTOR = 6,
             MATRIX = 7;
 
+    //v2 pings start with this byte, which can never be a v1 type
+    private static final int V2_HEADER = 0x82;
+    public static final int VERSION = 2;
+
+    //v2 types
+    private static final int
+            V2_NIL = 0,
+            V2_TRUE = 1,
+            V2_FALSE = 2,
+            V2_INT = 3, //zigzag varint
+            V2_FLOAT = 4, //doubles that fit a float without losing precision
+            V2_DOUBLE = 5,
+            V2_STRING = 6, //new string, added to the dictionary
+            V2_STRING_REF = 7, //index of an already written string
+            V2_TABLE = 8,
+            V2_ARRAY = 9, //tables with only the keys 1 to n
+            V2_VECTOR_FLOAT = 10,
+            V2_VECTOR_DOUBLE = 11,
+            V2_MATRIX_FLOAT = 12,
+            V2_MATRIX_DOUBLE = 13,
+            V2_SMALL_INT = 64; //ints from 0 to 191 are stored in the type byte itself
+
     private final Varargs args;
 
     public PingArg(Varargs args) {
@@ -35,13 +62,23 @@ public class PingArg {
     // -- writing -- //
 
     public byte[] toByteArray() {
+        return toByteArray(NetworkManager.usePingV2());
+    }
+
+    //older clients can only read v1, so v2 is only written once the backend negotiated it
+    public byte[] toByteArray(boolean v2) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(baos);
 
-            for (int i = 0; i < args.narg(); i++) {
-                LuaValue arg = args.arg(i + 1);
-                writeArg(arg, dos);
+            if (v2) {
+                Map<LuaString, Integer> strings = new HashMap<>();
+                dos.writeByte(V2_HEADER);
+                for (int i = 0; i < args.narg(); i++)
+                    writeArg(args.arg(i + 1), dos, strings);
+            } else {
+                for (int i = 0; i < args.narg(); i++)
+                    writeArgV1(args.arg(i + 1), dos);
             }
 
             return baos.toByteArray();
@@ -51,67 +88,191 @@ public class PingArg {
         }
     }
 
-    private void writeArg(LuaValue val, DataOutputStream dos) throws IOException {
+    private static void writeArg(LuaValue val, DataOutputStream dos, Map<LuaString, Integer> strings) throws IOException {
         if (val.isboolean()) {
-            dos.writeByte(BOOL);
-            dos.writeBoolean(val.checkboolean());
-        } else if (val instanceof LuaString) {
-            dos.writeByte(STRING);
-            dos.writeUTF(val.checkjstring());
+            dos.writeByte(val.checkboolean() ? V2_TRUE : V2_FALSE);
+        } else if (val instanceof LuaString s) {
+            writeString(s, dos, strings);
         } else if (val.isint()) {
-            dos.writeByte(INT);
-            dos.writeInt(val.checkinteger().v);
+            int i = val.checkint();
+            if (i >= 0 && i < 256 - V2_SMALL_INT) {
+                dos.writeByte(V2_SMALL_INT + i);
+            } else {
+                dos.writeByte(V2_INT);
+                writeVarInt((i << 1) ^ (i >> 31), dos);
+            }
         } else if (val.isnumber()) {
-            dos.writeByte(DOUBLE);
-            dos.writeDouble(val.checkdouble());
+            double d = val.checkdouble();
+            if (isFloat(d)) {
+                dos.writeByte(V2_FLOAT);
+                dos.writeFloat((float) d);
+            } else {
+                dos.writeByte(V2_DOUBLE);
+                dos.writeDouble(d);
+            }
         } else if (val.istable()) {
-            writeTable(val.checktable(), dos);
+            writeTable(val.checktable(), dos, strings);
         } else if (val.isuserdata(FiguraVector.class)) {
             writeVec((FiguraVector<?, ?>) val.checkuserdata(), dos);
         } else if (val.isuserdata(FiguraMatrix.class)) {
             writeMat((FiguraMatrix<?, ?>) val.checkuserdata(), dos);
         } else {
-            dos.writeByte(NIL);
+            dos.writeByte(V2_NIL);
         }
     }
 
-    private void writeTable(LuaTable table, DataOutputStream dos) throws IOException {
-        dos.writeByte(TABLE);
-        dos.writeInt(table.keyCount());
+    private static void writeString(LuaString s, DataOutputStream dos, Map<LuaString, Integer> strings) throws IOException {
+        Integer index = strings.get(s);
+        if (index != null) {
+            dos.writeByte(V2_STRING_REF);
+            writeVarInt(index, dos);
+            return;
+        }
 
+        strings.put(s, strings.size());
+        dos.writeByte(V2_STRING);
+        writeVarInt(s.m_length, dos);
+        dos.write(s.m_bytes, s.m_offset, s.m_length);
+    }
+
+    private static void writeTable(LuaTable table, DataOutputStream dos, Map<LuaString, Integer> strings) throws IOException {
+        int count = table.keyCount();
+        int length = table.length();
+
+        //array fast path, no need to write the keys
+        if (isArray(table, count, length)) {
+            dos.writeByte(V2_ARRAY);
+            writeVarInt(length, dos);
+            for (int i = 1; i <= length; i++)
+                writeArg(table.get(i), dos, strings);
+            return;
+        }
+
+        dos.writeByte(V2_TABLE);
+        writeVarInt(count, dos);
         for (LuaValue key : table.keys()) {
-            writeArg(key, dos);
-            writeArg(table.get(key), dos);
+            writeArg(key, dos, strings);
+            writeArg(table.get(key), dos, strings);
         }
     }
 
-    private void writeVec(FiguraVector<?, ?> vector, DataOutputStream dos) throws IOException {
-        dos.writeByte(VECTOR);
-        dos.writeByte(vector.size());
+    //the length is only a border, so the keys must be checked to really be 1 to n
+    private static boolean isArray(LuaTable table, int count, int length) {
+        if (count != length)
+            return false;
+        for (int i = 1; i <= length; i++)
+            if (table.rawget(i).isnil())
+                return false;
+        return true;
+    }
 
-        for (int i = 0; i < vector.size(); i++)
-            dos.writeDouble(vector.index(i));
+    private static void writeVec(FiguraVector<?, ?> vector, DataOutputStream dos) throws IOException {
+        boolean floats = true;
+        for (int i = 0; i < vector.size() && floats; i++)
+            floats = isFloat(vector.index(i));
+
+        dos.writeByte(floats ? V2_VECTOR_FLOAT : V2_VECTOR_DOUBLE);
+        dos.writeByte(vector.size());
+        writeComponents(vector, floats, dos);
     }
 
-    private void writeMat(FiguraMatrix<?, ?> matrix, DataOutputStream dos) throws IOException {
-        dos.writeByte(MATRIX);
+    private static void writeMat(FiguraMatrix<?, ?> matrix, DataOutputStream dos) throws IOException {
+        boolean floats = true;
+        for (int i = 0; i < matrix.cols() && floats; i++) {
+            FiguraVector<?, ?> vec = matrix.getColumn(i + 1);
+            for (int j = 0; j < vec.size() && floats; j++)
+                floats = isFloat(vec.index(j));
+        }
+
+        //matrices are square, so the column count is enough
+        dos.writeByte(floats ? V2_MATRIX_FLOAT : V2_MATRIX_DOUBLE);
         dos.writeByte(matrix.cols());
+        for (int i = 0; i < matrix.cols(); i++)
+            writeComponents(matrix.getColumn(i + 1), floats, dos);
+    }
 
-        for (int i = 0; i < matrix.cols(); i++) {
-            FiguraVector<?, ?> vec = matrix.getColumn(i + 1);
-            writeVec(vec, dos);
+    private static void writeComponents(FiguraVector<?, ?> vector, boolean floats, DataOutputStream dos) throws IOException {
+        for (int i = 0; i < vector.size(); i++) {
+            if (floats) dos.writeFloat((float) vector.index(i));
+            else dos.writeDouble(vector.index(i));
+        }
+    }
+
+    private static void writeVarInt(int value, DataOutputStream dos) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            dos.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dos.writeByte(value);
+    }
+
+    private static boolean isFloat(double d) {
+        return (double) (float) d == d || Double.isNaN(d);
+    }
+
+    // -- v1 writing -- //
+
+    private static void writeArgV1(LuaValue val, DataOutputStream dos) throws IOException {
+        if (val.isboolean()) {
+            dos.writeByte(BOOL);
+            dos.writeBoolean(val.checkboolean());
+        } else if (val instanceof LuaString) {
+            dos.writeByte(STRING);
+            dos.writeUTF(val.checkjstring());
+        } else if (val.isint()) {
+            dos.writeByte(INT);
+            dos.writeInt(val.checkint());
+        } else if (val.isnumber()) {
+            dos.writeByte(DOUBLE);
+            dos.writeDouble(val.checkdouble());
+        } else if (val.istable()) {
+            LuaTable table = val.checktable();
+            dos.writeByte(TABLE);
+            dos.writeInt(table.keyCount());
+            for (LuaValue key : table.keys()) {
+                writeArgV1(key, dos);
+                writeArgV1(table.get(key), dos);
+            }
+        } else if (val.isuserdata(FiguraVector.class)) {
+            writeVecV1((FiguraVector<?, ?>) val.checkuserdata(), dos);
+        } else if (val.isuserdata(FiguraMatrix.class)) {
+            FiguraMatrix<?, ?> matrix = (FiguraMatrix<?, ?>) val.checkuserdata();
+            dos.writeByte(MATRIX);
+            dos.writeByte(matrix.cols());
+            for (int i = 0; i < matrix.cols(); i++)
+                writeVecV1(matrix.getColumn(i + 1), dos);
+        } else {
+            dos.writeByte(NIL);
         }
     }
 
+    private static void writeVecV1(FiguraVector<?, ?> vector, DataOutputStream dos) throws IOException {
+        dos.writeByte(VECTOR);
+        dos.writeByte(vector.size());
+        for (int i = 0; i < vector.size(); i++)
+            dos.writeDouble(vector.index(i));
+    }
+
     // -- reading -- //
 
     public static Varargs fromByteArray(byte[] bytes, Avatar owner) {
+        return fromByteArray(bytes, owner.luaRuntime.typeManager);
+    }
+
+    public static Varargs fromByteArray(byte[] bytes, LuaTypeManager typeManager) {
         try {
             DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
-
             List<LuaValue> luaValues = new ArrayList<>();
-            while (dis.available() > 0)
-                luaValues.add(readArg(dis, owner));
+
+            if (bytes.length > 0 && (bytes[0] & 0xFF) == V2_HEADER) {
+                dis.readByte();
+                List<LuaString> strings = new ArrayList<>();
+                while (dis.available() > 0)
+                    luaValues.add(readArgV2(dis, typeManager, strings));
+            } else {
+                while (dis.available() > 0)
+                    luaValues.add(readArg(dis, typeManager));
+            }
 
             return LuaValue.varargsOf(luaValues.toArray(new LuaValue[0]));
         } catch (Exception e) {
@@ -120,7 +281,92 @@ public class PingArg {
         }
     }
 
-    private static LuaValue readArg(DataInputStream dis, Avatar owner) throws IOException {
+    // -- v2 -- //
+
+    private static LuaValue readArgV2(DataInputStream dis, LuaTypeManager typeManager, List<LuaString> strings) throws IOException {
+        int type = dis.readUnsignedByte();
+        if (type >= V2_SMALL_INT)
+            return LuaValue.valueOf(type - V2_SMALL_INT);
+
+        return switch (type) {
+            case V2_TRUE -> LuaValue.TRUE;
+            case V2_FALSE -> LuaValue.FALSE;
+            case V2_INT -> {
+                int i = readVarInt(dis);
+                yield LuaValue.valueOf((i >>> 1) ^ -(i & 1));
+            }
+            case V2_FLOAT -> LuaValue.valueOf(dis.readFloat());
+            case V2_DOUBLE -> LuaValue.valueOf(dis.readDouble());
+            case V2_STRING -> {
+                byte[] bytes = new byte[checkLength(readVarInt(dis), dis)];
+                dis.readFully(bytes);
+                LuaString s = LuaString.valueUsing(bytes);
+                strings.add(s);
+                yield s;
+            }
+            case V2_STRING_REF -> {
+                int index = readVarInt(dis);
+                if (index < 0 || index >= strings.size())
+                    throw new IOException("Invalid string reference " + index);
+                yield strings.get(index);
+            }
+            case V2_TABLE -> {
+                int size = checkLength(readVarInt(dis), dis);
+                LuaTable table = new LuaTable(0, size);
+                for (int i = 0; i < size; i++) {
+                    LuaValue key = readArgV2(dis, typeManager, strings);
+                    LuaValue value = readArgV2(dis, typeManager, strings);
+                    if (!key.isnil()) table.set(key, value);
+                }
+                yield table;
+            }
+            case V2_ARRAY -> {
+                int size = checkLength(readVarInt(dis), dis);
+                LuaTable table = new LuaTable(size, 0);
+                for (int i = 1; i <= size; i++)
+                    table.set(i, readArgV2(dis, typeManager, strings));
+                yield table;
+            }
+            case V2_VECTOR_FLOAT, V2_VECTOR_DOUBLE -> typeManager.javaToLua(MathUtils.sizedVector(readComponents(dis.readByte(), type == V2_VECTOR_FLOAT, dis)));
+            case V2_MATRIX_FLOAT, V2_MATRIX_DOUBLE -> {
+                byte columns = dis.readByte();
+                FiguraVector<?, ?>[] vectors = new FiguraVector[columns];
+                for (int i = 0; i < columns; i++)
+                    vectors[i] = MathUtils.sizedVector(readComponents(columns, type == V2_MATRIX_FLOAT, dis));
+                yield typeManager.javaToLua(MathUtils.sizedMat(vectors));
+            }
+            default -> LuaValue.NIL;
+        };
+    }
+
+    private static double[] readComponents(int size, boolean floats, DataInputStream dis) throws IOException {
+        double[] array = new double[checkLength(size, dis)];
+        for (int i = 0; i < size; i++)
+            array[i] = floats ? dis.readFloat() : dis.readDouble();
+        return array;
+    }
+
+    private static int readVarInt(DataInputStream dis) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = dis.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("VarInt too big");
+    }
+
+    //every element takes at least one byte, so anything bigger than what is left is malformed
+    private static int checkLength(int length, DataInputStream dis) throws IOException {
+        if (length < 0 || length > dis.available())
+            throw new IOException("Invalid length " + length);
+        return length;
+    }
+
+    // -- v1 -- //
+
+    private static LuaValue readArg(DataInputStream dis, LuaTypeManager typeManager) throws IOException {
         byte type = dis.readByte();
 
         return switch (type) {
@@ -128,19 +374,19 @@ public class PingArg {
             case INT -> LuaValue.valueOf(dis.readInt());
             case DOUBLE -> LuaValue.valueOf(dis.readDouble());
             case STRING -> LuaValue.valueOf(dis.readUTF());
-            case TABLE -> readTable(dis, owner);
-            case VECTOR -> owner.luaRuntime.typeManager.javaToLua(readVec(dis));
-            case MATRIX -> owner.luaRuntime.typeManager.javaToLua(readMat(dis));
+            case TABLE -> readTable(dis, typeManager);
+            case VECTOR -> typeManager.javaToLua(readVec(dis));
+            case MATRIX -> typeManager.javaToLua(readMat(dis));
             default -> LuaValue.NIL;
         };
     }
 
-    private static LuaValue readTable(DataInputStream dis, Avatar owner) throws IOException {
+    private static LuaValue readTable(DataInputStream dis, LuaTypeManager typeManager) throws IOException {
         int size = dis.readInt();
         LuaTable table = new LuaTable();
 
         for (int i = 0; i < size; i++)
-            table.set(readArg(dis, owner), readArg(dis, owner));
+            table.set(readArg(dis, typeManager), readArg(dis, typeManager));
 
         return table;
     }
@@ -57,11 +57,24 @@ public class PingFunction extends LuaFunction {
         if (!isHost)
             return NIL;
 
+        send(args);
+        return NIL;
+    }
+
+    //returns false when the ping could not be sent
+    protected boolean send(Varargs args) {
         boolean sync = Config.SYNC_PINGS.asBool();
         byte[] data = NetworkManager.sendPing(id, sync, new PingArg(args));
+        if (data == null)
+            return false;
+
         if (!sync) owner.runPing(id, data);
+        return true;
+    }
 
-        return NIL;
+    //turns the received arguments into the ones given to the lua function, or null to skip the ping
+    public Varargs receive(Varargs args) {
+        return args;
     }
 
     @Override
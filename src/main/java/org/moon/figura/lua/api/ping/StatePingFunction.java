@@ -0,0 +1,122 @@
+package org.moon.figura.lua.api.ping;
+
+import org.luaj.vm2.LuaFunction;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.moon.figura.FiguraMod;
+import org.moon.figura.avatars.Avatar;
+
+import java.util.*;
+
+/**
+ * A ping that syncs a table, only sending the keys that changed since the last keyframe, a full copy sent from time to time.
+ * Nothing is acknowledged, so every delta is against the keyframe rather than the previous delta,
+ * and a missed delta is fixed by the next one, while a missed keyframe is fixed by the next keyframe.
+ */
+public class StatePingFunction extends PingFunction {
+
+    //5 seconds
+    private static final int KEYFRAME_INTERVAL = 100;
+
+    //sender side - the encoded value of each key in the last sent keyframe, and the last sent delta
+    private final Map<LuaValue, byte[]> keyframe = new HashMap<>();
+    private int keyframeId = -1;
+    private int lastKeyframe = -1;
+    private byte[] lastDelta;
+
+    //receiver side - the last received keyframe, deltas against any other keyframe are ignored
+    private LuaTable receivedKeyframe;
+    private int receivedKeyframeId;
+
+    public StatePingFunction(int id, Avatar owner, LuaFunction func) {
+        super(id, owner, func);
+    }
+
+    @Override
+    protected boolean send(Varargs args) {
+        LuaTable state = args.checktable(1);
+
+        //the keyframe is only replaced once it was sent, otherwise try again on the next call
+        if (keyframeId < 0 || FiguraMod.ticks - lastKeyframe >= KEYFRAME_INTERVAL) {
+            int id = keyframeId + 1;
+            if (!super.send(varargsOf(TRUE, state, valueOf(id))))
+                return false;
+
+            keyframe.clear();
+            for (Varargs n = state.next(NIL); !n.arg1().isnil(); n = state.next(n.arg1()))
+                keyframe.put(n.arg1(), new PingArg(n.arg(2)).toByteArray());
+
+            keyframeId = id;
+            lastKeyframe = FiguraMod.ticks;
+            lastDelta = null;
+            return true;
+        }
+
+        //changed keys, compared by their encoded value so nested tables and vectors work too
+        LuaTable changed = new LuaTable();
+        Set<LuaValue> keys = new HashSet<>();
+        for (Varargs n = state.next(NIL); !n.arg1().isnil(); n = state.next(n.arg1())) {
+            LuaValue key = n.arg1();
+            LuaValue value = n.arg(2);
+            keys.add(key);
+
+            byte[] old = keyframe.get(key);
+            if (old == null || !Arrays.equals(old, new PingArg(value).toByteArray()))
+                changed.set(key, value);
+        }
+
+        //removed keys
+        LuaTable removed = new LuaTable();
+        for (LuaValue key : keyframe.keySet())
+            if (!keys.contains(key))
+                removed.set(removed.length() + 1, key);
+
+        //skip sending the same delta again, unless it failed to be sent
+        Varargs delta = varargsOf(new LuaValue[]{FALSE, changed, removed, valueOf(keyframeId)});
+        byte[] encoded = new PingArg(delta).toByteArray();
+        if (encoded == null || Arrays.equals(encoded, lastDelta))
+            return true;
+
+        if (!super.send(delta))
+            return false;
+
+        lastDelta = encoded;
+        return true;
+    }
+
+    @Override
+    public Varargs receive(Varargs args) {
+        boolean isKeyframe = args.arg1().toboolean();
+        if (!args.arg(2).istable())
+            return null;
+
+        LuaTable changed = args.arg(2).checktable();
+        if (isKeyframe) {
+            receivedKeyframe = changed;
+            receivedKeyframeId = args.arg(3).optint(0);
+        } else if (receivedKeyframe == null || args.arg(4).optint(0) != receivedKeyframeId) {
+            return null; //wait for the keyframe this delta is based on
+        }
+
+        //scripts get their own copy, so they can not break the keyframe
+        LuaTable copy = new LuaTable();
+        for (Varargs n = receivedKeyframe.next(NIL); !n.arg1().isnil(); n = receivedKeyframe.next(n.arg1()))
+            copy.set(n.arg1(), n.arg(2));
+
+        if (!isKeyframe) {
+            for (Varargs n = changed.next(NIL); !n.arg1().isnil(); n = changed.next(n.arg1()))
+                copy.set(n.arg1(), n.arg(2));
+
+            if (args.arg(3).istable()) {
+                LuaTable removed = args.arg(3).checktable();
+                for (int i = 1; i <= removed.length(); i++) {
+                    LuaValue key = removed.get(i);
+                    if (!key.isnil()) copy.set(key, NIL);
+                }
+            }
+        }
+
+        return copy;
+    }
+}
@@ -0,0 +1,60 @@
+package org.moon.figura.lua.api.sound;
+
+import com.mojang.blaze3d.audio.OggAudioStream;
+import com.mojang.blaze3d.audio.SoundBuffer;
+import net.minecraft.client.sounds.AudioStream;
+import net.minecraft.client.sounds.LoopingAudioStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * An avatar custom sound, kept as the original ogg file.
+ * Short sounds are only decoded when they are first played, and their decoded data is shared by the {@link SoundBufferCache},
+ * while long sounds are never fully decoded, being streamed instead.
+ */
+public class CustomSound {
+
+    //ogg files bigger than this are streamed
+    private static final int STREAMING_SIZE = 256 * 1024;
+
+    public final UUID owner;
+    public final String name;
+    private final byte[] data;
+
+    public CustomSound(UUID owner, String name, byte[] data) throws IOException {
+        this.owner = owner;
+        this.name = name;
+        this.data = data;
+
+        //only reads the header, to check if it is a valid ogg file
+        try (OggAudioStream ignored = new OggAudioStream(new ByteArrayInputStream(data))) {}
+    }
+
+    public int getSize() {
+        return data.length;
+    }
+
+    public boolean isStreamed() {
+        return data.length > STREAMING_SIZE;
+    }
+
+    //decoded sound, shared with the cache
+    public SoundBuffer getBuffer() {
+        return SoundBufferCache.get(this);
+    }
+
+    protected OggAudioStream openDecoder() throws IOException {
+        return new OggAudioStream(new ByteArrayInputStream(data));
+    }
+
+    public AudioStream openStream(boolean loop) throws IOException {
+        return loop ? new LoopingAudioStream(OggAudioStream::new, new ByteArrayInputStream(data)) : openDecoder();
+    }
+
+    //frees the decoded data, once the sound stops playing
+    public void release() {
+        SoundBufferCache.remove(this);
+    }
+}
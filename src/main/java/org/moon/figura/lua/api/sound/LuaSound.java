@@ -1,7 +1,6 @@
 package org.moon.figura.lua.api.sound;
 
 
-import com.mojang.blaze3d.audio.SoundBuffer;
 import net.minecraft.client.resources.sounds.SimpleSoundInstance;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.sounds.SoundEvent;
@@ -84,12 +83,12 @@ public class LuaSound {
             throw new LuaError("Illegal argument to playSound(): " + x);
         }
 
-        SoundBuffer buffer = owner.customSounds.get(id);
-        if (buffer != null && owner.trust.get(TrustContainer.Trust.CUSTOM_SOUNDS) == 1) {
+        CustomSound sound = owner.customSounds.get(id);
+        if (sound != null && owner.trust.get(TrustContainer.Trust.CUSTOM_SOUNDS) == 1) {
             SoundAPI.getSoundEngine().figura$playCustomSound(
                     owner.owner,
                     id,
-                    buffer,
+                    sound,
                     pos.x, pos.y, pos.z,
                     volume, pitch,
                     loop);
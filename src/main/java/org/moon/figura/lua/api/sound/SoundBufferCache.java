@@ -0,0 +1,112 @@
+package org.moon.figura.lua.api.sound;
+
+import com.mojang.blaze3d.audio.OggAudioStream;
+import com.mojang.blaze3d.audio.SoundBuffer;
+import org.moon.figura.FiguraMod;
+import org.moon.figura.config.Config;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The decoded data of the custom sounds of all avatars, limited by the configured size.
+ * The least recently played sounds are released first, but never while they are still playing,
+ * since an openal buffer can not be deleted while a source still uses it.
+ */
+public class SoundBufferCache {
+
+    private static final Map<CustomSound, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static final List<Entry> RELEASING = new ArrayList<>();
+
+    private static long size;
+    private static int hits, misses;
+
+    private record Entry(CustomSound sound, SoundBuffer buffer, int size) {}
+
+    //called from the sound thread when a sound starts playing
+    //the decoding happens outside the lock, so a long sound does not block the other sounds nor the tick
+    protected static SoundBuffer get(CustomSound sound) {
+        synchronized (SoundBufferCache.class) {
+            Entry entry = CACHE.get(sound);
+            if (entry != null) {
+                hits++;
+                return entry.buffer;
+            }
+            misses++;
+        }
+
+        Entry decoded;
+        try (OggAudioStream stream = sound.openDecoder()) {
+            ByteBuffer data = stream.readAll();
+            int bufferSize = data.remaining();
+            decoded = new Entry(sound, new SoundBuffer(data, stream.getFormat()), bufferSize);
+        } catch (Exception e) {
+            FiguraMod.LOGGER.warn("Failed to decode custom sound \"" + sound.name + "\"", e);
+            return null;
+        }
+
+        synchronized (SoundBufferCache.class) {
+            //the same sound could have been decoded by someone else meanwhile
+            Entry entry = CACHE.get(sound);
+            if (entry != null) {
+                decoded.buffer.releaseAlBuffer();
+                return entry.buffer;
+            }
+
+            CACHE.put(sound, decoded);
+            size += decoded.size;
+            return decoded.buffer;
+        }
+    }
+
+    protected static synchronized void remove(CustomSound sound) {
+        Entry entry = CACHE.remove(sound);
+        if (entry != null) {
+            size -= entry.size;
+            RELEASING.add(entry);
+        }
+    }
+
+    public static synchronized void tick() {
+        //release the removed sounds that finished playing
+        RELEASING.removeIf(entry -> {
+            if (isPlaying(entry.sound))
+                return false;
+            entry.buffer.releaseAlBuffer();
+            return true;
+        });
+
+        //then free space until we fit the limit
+        long limit = Config.SOUND_CACHE_SIZE.asInt() * 1024L * 1024L;
+        Iterator<Entry> iterator = CACHE.values().iterator();
+        while (size > limit && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (isPlaying(entry.sound))
+                continue;
+
+            iterator.remove();
+            size -= entry.size;
+            entry.buffer.releaseAlBuffer();
+        }
+    }
+
+    private static boolean isPlaying(CustomSound sound) {
+        return SoundAPI.getSoundEngine().figura$isPlaying(sound.owner, sound.name);
+    }
+
+    public static synchronized long getSize() {
+        return size;
+    }
+
+    public static int getHits() {
+        return hits;
+    }
+
+    public static int getMisses() {
+        return misses;
+    }
+}
@@ -26,6 +26,7 @@ public class VanillaModelPart extends VanillaPart {
 
     private boolean visible = true;
     private boolean storedVisibility;
+    private boolean altered;
 
     public VanillaModelPart(String name, ParentType parentType, Function<EntityModel<?>, ModelPart> provider) {
         super(name);
@@ -41,6 +42,7 @@ public class VanillaModelPart extends VanillaPart {
         ModelPart part = provider.apply(model);
         storedVisibility = part.visible;
         part.visible = visible;
+        altered = true;
     }
 
     @Override
@@ -61,8 +63,11 @@ public class VanillaModelPart extends VanillaPart {
 
     @Override
     public void restore(EntityModel<?> model) {
-        if (provider != null)
+        //only restore what was altered, as the api might have been created in between
+        if (provider != null && altered) {
             provider.apply(model).visible = storedVisibility;
+            altered = false;
+        }
     }
 
     @Override
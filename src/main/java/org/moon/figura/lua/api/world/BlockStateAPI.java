@@ -4,18 +4,20 @@ import net.minecraft.commands.arguments.blocks.BlockStateParser;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Registry;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.NbtUtils;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.SoundType;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.Property;
 import net.minecraft.world.level.material.Fluid;
 import net.minecraft.world.level.material.Material;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.shapes.VoxelShape;
 import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.moon.figura.lua.LazyLuaTable;
 import org.moon.figura.lua.LuaWhitelist;
 import org.moon.figura.lua.NbtToLua;
 import org.moon.figura.lua.docs.LuaFieldDoc;
@@ -52,9 +54,7 @@ public class BlockStateAPI {
         this.blockState = blockstate;
         this.pos = pos;
         this.id = Registry.BLOCK.getKey(blockstate.getBlock()).toString();
-
-        CompoundTag tag = NbtUtils.writeBlockState(blockstate);
-        this.properties = (LuaTable) NbtToLua.convert(tag.contains("Properties") ? tag.get("Properties") : null);
+        this.properties = blockstate.getValues().isEmpty() ? null : new PropertiesTable(blockstate);
     }
 
     protected BlockPos getBlockPos() {
@@ -274,7 +274,7 @@ public class BlockStateAPI {
     @LuaMethodDoc("blockstate.get_entity_data")
     public LuaTable getEntityData() {
         BlockEntity entity = WorldAPI.getCurrentWorld().getBlockEntity(getBlockPos());
-        return (LuaTable) NbtToLua.convert(entity != null ? entity.saveWithoutMetadata() : null);
+        return (LuaTable) NbtToLua.lazy(entity != null ? entity.saveWithoutMetadata() : null);
     }
 
     @LuaWhitelist
@@ -300,4 +300,35 @@ public class BlockStateAPI {
     public String toString() {
         return id + " (BlockState)";
     }
+
+    //properties are only read from the block state when indexed, since most scripts only care about the id
+    private static class PropertiesTable extends LazyLuaTable {
+
+        private final BlockState blockState;
+
+        public PropertiesTable(BlockState blockState) {
+            this.blockState = blockState;
+        }
+
+        @Override
+        protected LuaValue load(LuaValue key) {
+            if (key.type() != LuaValue.TSTRING)
+                return null;
+
+            Property<?> property = blockState.getBlock().getStateDefinition().getProperty(key.tojstring());
+            return property == null ? null : LuaValue.valueOf(getValueName(property));
+        }
+
+        @Override
+        protected Iterable<LuaValue> getLazyKeys() {
+            List<LuaValue> keys = new ArrayList<>();
+            for (Property<?> property : blockState.getProperties())
+                keys.add(LuaValue.valueOf(property.getName()));
+            return keys;
+        }
+
+        private <T extends Comparable<T>> String getValueName(Property<T> property) {
+            return property.getName(blockState.getValue(property));
+        }
+    }
 }
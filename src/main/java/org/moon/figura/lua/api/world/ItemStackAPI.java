@@ -45,12 +45,21 @@ public class ItemStackAPI {
     public final String id;
     @LuaWhitelist
     @LuaFieldDoc("itemstack.tag")
-    public final LuaTable tag;
+    public LuaTable tag;
+    private boolean tagRead;
 
     public ItemStackAPI(ItemStack itemStack) {
         this.itemStack = itemStack;
         this.id = Registry.ITEM.getKey(itemStack.getItem()).toString();
-        this.tag = (LuaTable) NbtToLua.convert(itemStack.getTag() != null ? itemStack.getTag() : null);
+    }
+
+    //the tag is only read from the stack when a script asks for it
+    private LuaTable getTag() {
+        if (!tagRead) {
+            tag = (LuaTable) NbtToLua.lazy(itemStack.getTag());
+            tagRead = true;
+        }
+        return tag;
     }
 
     @LuaWhitelist
@@ -184,7 +193,7 @@ public class ItemStackAPI {
         if (arg == null) return null;
         return switch (arg) {
             case "id" -> id;
-            case "tag" -> tag;
+            case "tag" -> getTag();
             default -> null;
         };
     }
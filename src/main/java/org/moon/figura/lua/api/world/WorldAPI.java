@@ -1,33 +1,32 @@
 package org.moon.figura.lua.api.world;
 
 import com.mojang.brigadier.StringReader;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.client.Minecraft;
 import net.minecraft.commands.arguments.blocks.BlockStateArgument;
 import net.minecraft.commands.arguments.item.ItemArgument;
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.LightLayer;
-import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
 import org.moon.figura.avatars.Avatar;
-import org.moon.figura.avatars.AvatarManager;
+import org.moon.figura.avatars.AvatarVariables;
+import org.moon.figura.lua.FiguraLuaRuntime;
 import org.moon.figura.lua.LuaNotNil;
+import org.moon.figura.lua.LuaTypeManager;
 import org.moon.figura.lua.LuaWhitelist;
 import org.moon.figura.lua.api.entity.EntityAPI;
-import org.moon.figura.lua.api.entity.PlayerAPI;
 import org.moon.figura.lua.docs.LuaFunctionOverload;
 import org.moon.figura.lua.docs.LuaMethodDoc;
 import org.moon.figura.lua.docs.LuaTypeDoc;
 import org.moon.figura.math.vector.FiguraVec3;
+import org.moon.figura.trust.TrustContainer;
 import org.moon.figura.utils.EntityUtils;
 import org.moon.figura.utils.LuaUtils;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
 @LuaWhitelist
@@ -39,6 +38,9 @@ public class WorldAPI {
 
     public static final WorldAPI INSTANCE = new WorldAPI();
 
+    //hard limit of a single block query, even with infinite trust, so one call can not freeze the client
+    private static final int MAX_BLOCK_QUERY_VOLUME = 65536;
+
     public static Level getCurrentWorld() {
         return Minecraft.getInstance().level;
     }
@@ -59,9 +61,9 @@ public class WorldAPI {
     )
     public static BiomeAPI getBiome(Object x, Double y, Double z) {
         FiguraVec3 pos = LuaUtils.parseVec3("getBiome", x, y, z);
-        BiomeAPI result = new BiomeAPI(getCurrentWorld().getBiome(pos.asBlockPos()).value(), pos.asBlockPos());
+        BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        return result;
+        return new BiomeAPI(WorldCache.getBiome(getCurrentWorld(), blockPos), blockPos);
     }
 
     @LuaWhitelist
@@ -82,10 +84,118 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("getBlockState", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
+        return new BlockStateAPI(WorldCache.getBlockState(getCurrentWorld(), blockPos), blockPos);
+    }
+
+    @LuaWhitelist
+    @LuaMethodDoc(
+            overloads = {
+                    @LuaFunctionOverload(
+                            argumentTypes = {FiguraVec3.class, FiguraVec3.class},
+                            argumentNames = {"from", "to"}
+                    ),
+                    @LuaFunctionOverload(
+                            argumentTypes = {Double.class, Double.class, Double.class, FiguraVec3.class},
+                            argumentNames = {"fromX", "fromY", "fromZ", "to"}
+                    ),
+                    @LuaFunctionOverload(
+                            argumentTypes = {FiguraVec3.class, Double.class, Double.class, Double.class},
+                            argumentNames = {"from", "toX", "toY", "toZ"}
+                    ),
+                    @LuaFunctionOverload(
+                            argumentTypes = {Double.class, Double.class, Double.class, Double.class, Double.class, Double.class},
+                            argumentNames = {"fromX", "fromY", "fromZ", "toX", "toY", "toZ"}
+                    )
+            },
+            value = "world.get_blocks"
+    )
+    public static LuaTable getBlocks(Avatar avatar, Object x, Object y, Double z, Object w, Double t, Double h) {
+        FiguraVec3 from, to;
+
+        //parse both corners (same logic used in the vectors#rotateAroundAxis() method)
+        if (x instanceof FiguraVec3 vec1) {
+            from = vec1.copy();
+            if (y instanceof FiguraVec3 vec2) {
+                to = vec2.copy();
+            } else if (y == null || y instanceof Number) {
+                if (w == null || w instanceof Number) {
+                    to = LuaUtils.parseVec3("getBlocks", y, z, (Number) w);
+                } else {
+                    throw new LuaError("Illegal argument to getBlocks(): " + w);
+                }
+            } else {
+                throw new LuaError("Illegal argument to getBlocks(): " + y);
+            }
+        } else if (x == null || x instanceof Number && y == null || y instanceof Number) {
+            from = LuaUtils.parseVec3("getBlocks", x, (Number) y, z);
+            if (w instanceof FiguraVec3 vec1) {
+                to = vec1.copy();
+            } else if (w == null || w instanceof Number) {
+                to = LuaUtils.parseVec3("getBlocks", w, t, h);
+            } else {
+                throw new LuaError("Illegal argument to getBlocks(): " + w);
+            }
+        } else {
+            throw new LuaError("Illegal argument to getBlocks(): " + x);
+        }
+
+        BlockPos a = from.asBlockPos();
+        BlockPos b = to.asBlockPos();
+        from.free();
+        to.free();
+
+        int minX = Math.min(a.getX(), b.getX()), minY = Math.min(a.getY(), b.getY()), minZ = Math.min(a.getZ(), b.getZ());
+        int sizeX = Math.abs(a.getX() - b.getX()) + 1, sizeY = Math.abs(a.getY() - b.getY()) + 1, sizeZ = Math.abs(a.getZ() - b.getZ()) + 1;
+
+        //check volume against trust
+        long volume = (long) sizeX * sizeY * sizeZ;
+        int limit = avatar.trust.get(TrustContainer.Trust.BLOCK_QUERY_VOLUME);
+        if (TrustContainer.Trust.BLOCK_QUERY_VOLUME.checkInfinity(limit) || limit > MAX_BLOCK_QUERY_VOLUME)
+            limit = MAX_BLOCK_QUERY_VOLUME;
+        if (volume > limit)
+            throw new LuaError("Region volume of " + volume + " blocks exceeds the limit of " + limit);
+
+        //one palette entry per distinct state, and one index per block
         Level world = getCurrentWorld();
-        if (world.getChunkAt(blockPos) == null)
-            return new BlockStateAPI(Blocks.AIR.defaultBlockState(), blockPos);
-        return new BlockStateAPI(world.getBlockState(blockPos), blockPos);
+        FiguraLuaRuntime runtime = avatar.luaRuntime;
+        LuaTypeManager typeManager = runtime.typeManager;
+        Reference2IntOpenHashMap<BlockState> paletteIndices = new Reference2IntOpenHashMap<>();
+        LuaTable palette = new LuaTable();
+        LuaTable blocks = new LuaTable((int) volume, 0);
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+        int i = 1;
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                //large regions can take a while, so check the time budget for every row
+                runtime.checkTimeLimit();
+
+                for (int x = 0; x < sizeX; x++) {
+                    pos.set(minX + x, minY + y, minZ + z);
+                    BlockState state = WorldCache.peekBlockState(world, pos);
+
+                    int index = paletteIndices.getInt(state);
+                    if (index == 0) {
+                        index = paletteIndices.size() + 1;
+                        paletteIndices.put(state, index);
+                        palette.set(index, typeManager.javaToLua(new BlockStateAPI(state, pos.immutable())));
+                    }
+
+                    blocks.set(i++, LuaValue.valueOf(index));
+                }
+            }
+        }
+
+        LuaTable size = new LuaTable();
+        size.set("x", sizeX);
+        size.set("y", sizeY);
+        size.set("z", sizeZ);
+
+        LuaTable result = new LuaTable();
+        result.set("size", size);
+        result.set("palette", palette);
+        result.set("blocks", blocks);
+        return result;
     }
 
     @LuaWhitelist
@@ -106,9 +216,7 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("getRedstonePower", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        if (getCurrentWorld().getChunkAt(blockPos) == null)
-            return 0;
-        return getCurrentWorld().getBestNeighborSignal(blockPos);
+        return WorldCache.getRedstonePower(getCurrentWorld(), blockPos);
     }
 
     @LuaWhitelist
@@ -129,9 +237,7 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("getStrongRedstonePower", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        if (getCurrentWorld().getChunkAt(blockPos) == null)
-            return 0;
-        return getCurrentWorld().getDirectSignalTo(blockPos);
+        return WorldCache.getStrongRedstonePower(getCurrentWorld(), blockPos);
     }
 
     @LuaWhitelist
@@ -213,11 +319,7 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("getLightLevel", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        Level world = getCurrentWorld();
-        if (world.getChunkAt(blockPos) == null)
-            return null;
-        world.updateSkyBrightness();
-        return world.getLightEngine().getRawBrightness(blockPos, world.getSkyDarken());
+        return WorldCache.getLightLevel(getCurrentWorld(), blockPos);
     }
 
     @LuaWhitelist
@@ -238,10 +340,7 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("getSkyLightLevel", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        Level world = getCurrentWorld();
-        if (world.getChunkAt(blockPos) == null)
-            return null;
-        return world.getBrightness(LightLayer.SKY, blockPos);
+        return WorldCache.getSkyLightLevel(getCurrentWorld(), blockPos);
     }
 
     @LuaWhitelist
@@ -262,10 +361,7 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("getBlockLightLevel", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        Level world = getCurrentWorld();
-        if (world.getChunkAt(blockPos) == null)
-            return null;
-        return world.getBrightness(LightLayer.BLOCK, blockPos);
+        return WorldCache.getBlockLightLevel(getCurrentWorld(), blockPos);
     }
 
     @LuaWhitelist
@@ -286,19 +382,13 @@ public class WorldAPI {
         FiguraVec3 pos = LuaUtils.parseVec3("isOpenSky", x, y, z);
         BlockPos blockPos = pos.asBlockPos();
         pos.free();
-        Level world = getCurrentWorld();
-        if (world.getChunkAt(blockPos) == null)
-            return null;
-        return world.canSeeSky(blockPos);
+        return WorldCache.isOpenSky(getCurrentWorld(), blockPos);
     }
 
     @LuaWhitelist
     @LuaMethodDoc("world.get_players")
-    public static Map<String, EntityAPI<?>> getPlayers() {
-        HashMap<String, EntityAPI<?>> playerList = new HashMap<>();
-        for (Player player : getCurrentWorld().players())
-            playerList.put(player.getName().getString(), PlayerAPI.wrap(player));
-        return playerList;
+    public static LuaTable getPlayers(Avatar avatar) {
+        return avatar.luaRuntime.getPlayers();
     }
 
     @LuaWhitelist
@@ -319,14 +409,8 @@ public class WorldAPI {
 
     @LuaWhitelist
     @LuaMethodDoc("world.player_vars")
-    public static Map<String, LuaTable> playerVars() {
-        HashMap<String, LuaTable> playerList = new HashMap<>();
-        for (Player player : getCurrentWorld().players()) {
-            Avatar avatar = AvatarManager.getAvatarForPlayer(player.getUUID());
-            LuaTable tbl = avatar == null || avatar.luaRuntime == null ? new LuaTable() : avatar.luaRuntime.avatar_meta.storedStuff;
-            playerList.put(player.getName().getString(), tbl);
-        }
-        return playerList;
+    public static LuaTable playerVars() {
+        return AvatarVariables.getPlayerValues(getCurrentWorld());
     }
 
     @LuaWhitelist
@@ -0,0 +1,205 @@
+package org.moon.figura.lua.api.world;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Remembers the world queries made by scripts for the current tick, keyed by {@link BlockPos#asLong()}.
+ * Shared by every avatar, cleared every tick and when the world changes.
+ * The maps are not thread safe, so only queries from the render thread are cached, other threads always query the world.
+ */
+public class WorldCache {
+
+    //stored when the original query returned null
+    private static final int NULL = Integer.MIN_VALUE;
+    //returned by the maps when the position was not queried yet
+    private static final int MISSING = Integer.MIN_VALUE + 1;
+
+    private static final Long2ObjectOpenHashMap<BlockState> BLOCK_STATES = new Long2ObjectOpenHashMap<>();
+    private static final Long2ObjectOpenHashMap<Biome> BIOMES = new Long2ObjectOpenHashMap<>();
+    private static final Long2IntOpenHashMap LIGHT = intMap();
+    private static final Long2IntOpenHashMap SKY_LIGHT = intMap();
+    private static final Long2IntOpenHashMap BLOCK_LIGHT = intMap();
+    private static final Long2IntOpenHashMap OPEN_SKY = intMap();
+    private static final Long2IntOpenHashMap REDSTONE = intMap();
+    private static final Long2IntOpenHashMap STRONG_REDSTONE = intMap();
+
+    private static Level level;
+    private static long hits, misses;
+
+    private static Long2IntOpenHashMap intMap() {
+        Long2IntOpenHashMap map = new Long2IntOpenHashMap();
+        map.defaultReturnValue(MISSING);
+        return map;
+    }
+
+    // -- invalidation -- //
+
+    public static void tick() {
+        clear();
+    }
+
+    //the light and sky values around the block are only refreshed on the next tick, as the light engine also updates them later
+    public static void blockChanged(BlockPos pos) {
+        if (!RenderSystem.isOnRenderThread())
+            return;
+
+        long key = pos.asLong();
+        BLOCK_STATES.remove(key);
+        REDSTONE.remove(key);
+        STRONG_REDSTONE.remove(key);
+
+        //redstone power is read from the neighbours
+        for (Direction direction : Direction.values()) {
+            long neighbour = BlockPos.offset(key, direction);
+            REDSTONE.remove(neighbour);
+            STRONG_REDSTONE.remove(neighbour);
+        }
+    }
+
+    private static void clear() {
+        BLOCK_STATES.clear();
+        BIOMES.clear();
+        LIGHT.clear();
+        SKY_LIGHT.clear();
+        BLOCK_LIGHT.clear();
+        OPEN_SKY.clear();
+        REDSTONE.clear();
+        STRONG_REDSTONE.clear();
+    }
+
+    private static void validate(Level world) {
+        if (world != level) {
+            clear();
+            level = world;
+        }
+    }
+
+    // -- queries -- //
+
+    public static BlockState getBlockState(Level world, BlockPos pos) {
+        if (!RenderSystem.isOnRenderThread())
+            return readBlockState(world, pos);
+
+        validate(world);
+        long key = pos.asLong();
+
+        BlockState state = BLOCK_STATES.get(key);
+        if (state != null) {
+            hits++;
+            return state;
+        }
+
+        misses++;
+        state = readBlockState(world, pos);
+        BLOCK_STATES.put(key, state);
+        return state;
+    }
+
+    //same as above, but does not store what it reads, for queries too large to be worth caching
+    public static BlockState peekBlockState(Level world, BlockPos pos) {
+        if (RenderSystem.isOnRenderThread()) {
+            validate(world);
+            BlockState state = BLOCK_STATES.get(pos.asLong());
+            if (state != null) {
+                hits++;
+                return state;
+            }
+            misses++;
+        }
+
+        return readBlockState(world, pos);
+    }
+
+    private static BlockState readBlockState(Level world, BlockPos pos) {
+        return world.getChunkAt(pos) == null ? Blocks.AIR.defaultBlockState() : world.getBlockState(pos);
+    }
+
+    public static Biome getBiome(Level world, BlockPos pos) {
+        if (!RenderSystem.isOnRenderThread())
+            return world.getBiome(pos).value();
+
+        validate(world);
+        long key = pos.asLong();
+
+        Biome biome = BIOMES.get(key);
+        if (biome != null) {
+            hits++;
+            return biome;
+        }
+
+        misses++;
+        biome = world.getBiome(pos).value();
+        BIOMES.put(key, biome);
+        return biome;
+    }
+
+    public static Integer getLightLevel(Level world, BlockPos pos) {
+        return get(world, pos, LIGHT, (w, p) -> {
+            w.updateSkyBrightness();
+            return w.getLightEngine().getRawBrightness(p, w.getSkyDarken());
+        });
+    }
+
+    public static Integer getSkyLightLevel(Level world, BlockPos pos) {
+        return get(world, pos, SKY_LIGHT, (w, p) -> w.getBrightness(LightLayer.SKY, p));
+    }
+
+    public static Integer getBlockLightLevel(Level world, BlockPos pos) {
+        return get(world, pos, BLOCK_LIGHT, (w, p) -> w.getBrightness(LightLayer.BLOCK, p));
+    }
+
+    public static Boolean isOpenSky(Level world, BlockPos pos) {
+        Integer value = get(world, pos, OPEN_SKY, (w, p) -> w.canSeeSky(p) ? 1 : 0);
+        return value == null ? null : value == 1;
+    }
+
+    public static int getRedstonePower(Level world, BlockPos pos) {
+        Integer value = get(world, pos, REDSTONE, Level::getBestNeighborSignal);
+        return value == null ? 0 : value;
+    }
+
+    public static int getStrongRedstonePower(Level world, BlockPos pos) {
+        Integer value = get(world, pos, STRONG_REDSTONE, Level::getDirectSignalTo);
+        return value == null ? 0 : value;
+    }
+
+    private static Integer get(Level world, BlockPos pos, Long2IntOpenHashMap map, ToIntBiFunction<Level, BlockPos> getter) {
+        if (!RenderSystem.isOnRenderThread())
+            return world.getChunkAt(pos) == null ? null : getter.applyAsInt(world, pos);
+
+        validate(world);
+        long key = pos.asLong();
+
+        int value = map.get(key);
+        if (value != MISSING) {
+            hits++;
+            return value == NULL ? null : value;
+        }
+
+        misses++;
+        value = world.getChunkAt(pos) == null ? NULL : getter.applyAsInt(world, pos);
+        map.put(key, value);
+        return value == NULL ? null : value;
+    }
+
+    // -- stats -- //
+
+    public static long getHits() {
+        return hits;
+    }
+
+    public static long getMisses() {
+        return misses;
+    }
+}
@@ -88,7 +88,7 @@ public abstract class MinecraftMixin {
 
         //unlock cursor :p
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.host.unlockCursor) {
+        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.host != null && avatar.luaRuntime.host.unlockCursor) {
             this.mouseHandler.releaseMouse();
             scriptMouseUnlock = true;
         } else if (scriptMouseUnlock) {
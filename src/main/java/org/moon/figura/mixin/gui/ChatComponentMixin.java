@@ -58,7 +58,7 @@ public class ChatComponentMixin {
 
             //apply customization
             Component replacement;
-            NameplateCustomization custom = avatar.luaRuntime == null ? null : avatar.luaRuntime.nameplate.CHAT;
+            NameplateCustomization custom = avatar.luaRuntime == null || avatar.luaRuntime.nameplate == null ? null : avatar.luaRuntime.nameplate.CHAT;
             if (custom != null && custom.getText() != null && avatar.trust.get(TrustContainer.Trust.NAMEPLATE_EDIT) == 1) {
                 replacement = NameplateCustomization.applyCustomization(custom.getText().replaceAll("\n|\\\\n", ""));
             } else {
@@ -34,7 +34,7 @@ public class ChatScreenMixin {
     @Inject(at = @At("HEAD"), method = "render")
     private void render(PoseStack poseStack, int mouseX, int mouseY, float delta, CallbackInfo ci) {
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar == null || avatar.luaRuntime == null)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.host == null)
             return;
 
         Integer color = avatar.luaRuntime.host.chatColor;
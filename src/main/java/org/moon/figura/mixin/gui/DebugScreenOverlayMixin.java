@@ -30,7 +30,7 @@ public class DebugScreenOverlayMixin {
 		lines.add(++i, "Version: " + FiguraMod.VERSION);
 
 		Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-		if (avatar != null && avatar.nbt != null) {
+		if (avatar != null && avatar.hasData()) {
 			lines.add(++i, String.format("Model Complexity: %d", avatar.complexity));
 			lines.add(++i, String.format("Animations Complexity: %d", avatar.animationComplexity));
 
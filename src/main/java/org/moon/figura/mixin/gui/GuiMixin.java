@@ -36,7 +36,7 @@ public class GuiMixin {
 
         Entity entity = this.minecraft.getCameraEntity();
         Avatar avatar;
-        if (entity != null && (avatar = AvatarManager.getAvatar(entity)) != null && avatar.luaRuntime != null && !avatar.luaRuntime.renderer.renderCrosshair)
+        if (entity != null && (avatar = AvatarManager.getAvatar(entity)) != null && avatar.luaRuntime != null && avatar.luaRuntime.renderer != null && !avatar.luaRuntime.renderer.renderCrosshair)
             ci.cancel();
     }
 }
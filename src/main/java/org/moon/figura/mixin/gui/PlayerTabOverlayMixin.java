@@ -39,7 +39,7 @@ public class PlayerTabOverlayMixin {
         Component text = cir.getReturnValue();
         Component replacement;
 
-        NameplateCustomization custom = avatar.luaRuntime == null ? null : avatar.luaRuntime.nameplate.LIST;
+        NameplateCustomization custom = avatar.luaRuntime == null || avatar.luaRuntime.nameplate == null ? null : avatar.luaRuntime.nameplate.LIST;
         if (custom != null && custom.getText() != null && avatar.trust.get(TrustContainer.Trust.NAMEPLATE_EDIT) == 1) {
             replacement = NameplateCustomization.applyCustomization(custom.getText());
         } else {
@@ -21,21 +21,21 @@ public class KeyMappingMixin {
     @Inject(method = "setAll", at = @At("HEAD"))
     private static void setAll(CallbackInfo ci) {
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar != null && avatar.luaRuntime != null)
+        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.keybind != null)
             FiguraKeybind.updateAll(avatar.luaRuntime.keybind.keyBindings);
     }
 
     @Inject(method = "releaseAll", at = @At("HEAD"))
     private static void releaseAll(CallbackInfo ci) {
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar != null && avatar.luaRuntime != null)
+        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.keybind != null)
             FiguraKeybind.releaseAll(avatar.luaRuntime.keybind.keyBindings);
     }
 
     @ModifyVariable(method = "setDown", at = @At("HEAD"), argsOnly = true)
     private boolean setDown(boolean pressed) {
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar == null || avatar.luaRuntime == null)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.keybind == null)
             return pressed;
 
         return pressed && !FiguraKeybind.overridesKey(avatar.luaRuntime.keybind.keyBindings, this.key);
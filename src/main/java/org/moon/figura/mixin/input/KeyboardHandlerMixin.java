@@ -26,7 +26,7 @@ public class KeyboardHandlerMixin {
             return;
 
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (avatar == null || avatar.luaRuntime == null)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.keybind == null)
             return;
 
         if (FiguraKeybind.set(avatar.luaRuntime.keybind.keyBindings, InputConstants.getKey(key, scancode), action != 0)) {
@@ -33,11 +33,11 @@ public class MouseHandlerMixin {
         if (avatar == null || avatar.luaRuntime == null)
             return;
 
-        if (pressed && avatar.luaRuntime.host.unlockCursor)
+        if (pressed && avatar.luaRuntime.host != null && avatar.luaRuntime.host.unlockCursor)
             ci.cancel();
 
         //this needs to be last because it executes functions and can cause lua errors, making luaState null
-        if (FiguraKeybind.set(avatar.luaRuntime.keybind.keyBindings, InputConstants.Type.MOUSE.getOrCreate(button), pressed))
+        if (avatar.luaRuntime != null && avatar.luaRuntime.keybind != null && FiguraKeybind.set(avatar.luaRuntime.keybind.keyBindings, InputConstants.Type.MOUSE.getOrCreate(button), pressed))
             ci.cancel();
     }
 
@@ -59,7 +59,7 @@ public class MouseHandlerMixin {
     @Inject(method = "grabMouse", at = @At("HEAD"), cancellable = true)
     private void grabMouse(CallbackInfo ci) {
         Avatar avatar = AvatarManager.getAvatarForPlayer(FiguraMod.getLocalPlayerUUID());
-        if (ActionWheel.isEnabled() || (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.host.unlockCursor))
+        if (ActionWheel.isEnabled() || (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.host != null && avatar.luaRuntime.host.unlockCursor))
             ci.cancel();
     }
 }
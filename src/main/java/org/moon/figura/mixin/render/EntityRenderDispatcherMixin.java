@@ -23,7 +23,7 @@ public class EntityRenderDispatcherMixin {
     @Inject(method = "renderFlame", at = @At("HEAD"), cancellable = true)
     private void renderFlame(PoseStack stack, MultiBufferSource multiBufferSource, Entity entity, CallbackInfo ci) {
         Avatar avatar = AvatarManager.getAvatar(entity);
-        if (avatar == null || avatar.luaRuntime == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.renderer == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0)
             return;
 
         if (!avatar.luaRuntime.renderer.renderFire)
@@ -38,7 +38,7 @@ public class EntityRenderDispatcherMixin {
     @ModifyVariable(method = "renderShadow", at = @At("HEAD"), ordinal = 2, argsOnly = true)
     private static float modifyShadowSize(float h, PoseStack poseStack, MultiBufferSource multiBufferSource, Entity entity, float f, float g, LevelReader levelReader) {
         Avatar avatar = AvatarManager.getAvatar(entity);
-        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.renderer.shadowRadius != null && avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
+        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.renderer != null && avatar.luaRuntime.renderer.shadowRadius != null && avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
             return avatar.luaRuntime.renderer.shadowRadius;
         return h;
     }
@@ -50,7 +50,7 @@ public class EntityRenderDispatcherMixin {
             return;
 
         Avatar avatar = AvatarManager.getAvatar(owner);
-        if (avatar == null || avatar.luaRuntime == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.renderer == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0)
             return;
 
         if (!avatar.luaRuntime.renderer.renderVehicle)
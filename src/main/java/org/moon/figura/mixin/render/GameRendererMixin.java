@@ -35,7 +35,7 @@ public abstract class GameRendererMixin implements GameRendererAccessor {
     @Inject(method = "renderLevel", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/Camera;setup(Lnet/minecraft/world/level/BlockGetter;Lnet/minecraft/world/entity/Entity;ZZF)V", shift = At.Shift.BEFORE))
     private void onCameraRotation(float tickDelta, long limitTime, PoseStack matrix, CallbackInfo ci) {
         Avatar avatar = AvatarManager.getAvatar(this.minecraft.getCameraEntity() == null ? this.minecraft.player : this.minecraft.getCameraEntity());
-        if (avatar == null || avatar.luaRuntime == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.renderer == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0)
             return;
 
         float z = 0f;
@@ -55,7 +55,7 @@ public abstract class GameRendererMixin implements GameRendererAccessor {
     private void render(float tickDelta, long startTime, boolean tick, CallbackInfo ci) {
         Entity entity = this.minecraft.getCameraEntity();
         Avatar avatar = AvatarManager.getAvatar(entity);
-        if (avatar == null || avatar.luaRuntime == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0) {
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.renderer == null || avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 0) {
             if (avatarPostShader) {
                 avatarPostShader = false;
                 this.checkEntityPostEffect(entity);
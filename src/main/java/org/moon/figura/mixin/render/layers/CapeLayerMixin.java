@@ -32,7 +32,7 @@ public abstract class CapeLayerMixin extends RenderLayer<AbstractClientPlayer, P
     @Inject(method = "render(Lcom/mojang/blaze3d/vertex/PoseStack;Lnet/minecraft/client/renderer/MultiBufferSource;ILnet/minecraft/client/player/AbstractClientPlayer;FFFFFF)V", at = @At("HEAD"))
     public void preRender(PoseStack poseStack, MultiBufferSource multiBufferSource, int i, AbstractClientPlayer abstractClientPlayer, float f, float g, float h, float j, float k, float l, CallbackInfo ci) {
         avatar = AvatarManager.getAvatar(abstractClientPlayer);
-        if (avatar == null || avatar.luaRuntime == null)
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.vanilla_model == null)
             return;
 
         //Acquire reference to fake cloak
@@ -96,7 +96,7 @@ public abstract class CapeLayerMixin extends RenderLayer<AbstractClientPlayer, P
         if (avatar == null)
             return;
 
-        if (avatar.luaRuntime != null)
+        if (avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null)
             avatar.luaRuntime.vanilla_model.CAPE.restore(getParentModel());
 
         avatar = null;
@@ -41,7 +41,7 @@ public abstract class ParrotOnShoulderLayerMixin<T extends Player> extends Rende
             return;
 
         //script hide
-        if (avatar.luaRuntime != null &&
+        if (avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null &&
                 (leftShoulder && !avatar.luaRuntime.vanilla_model.LEFT_PARROT.getVisible() ||
                 !leftShoulder && !avatar.luaRuntime.vanilla_model.RIGHT_PARROT.getVisible())
         ) {
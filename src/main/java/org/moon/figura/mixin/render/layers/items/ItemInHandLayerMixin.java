@@ -41,7 +41,7 @@ public abstract class ItemInHandLayerMixin<T extends LivingEntity, M extends Ent
         boolean left = humanoidArm == HumanoidArm.LEFT;
 
         //script hide
-        if (avatar.luaRuntime != null &&
+        if (avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null &&
                 (left && !avatar.luaRuntime.vanilla_model.LEFT_ITEM.getVisible() ||
                 !left && !avatar.luaRuntime.vanilla_model.RIGHT_ITEM.getVisible())
         ) {
@@ -49,7 +49,7 @@ public abstract class PlayerItemInHandLayerMixin <T extends Player, M extends En
         boolean left = humanoidArm == HumanoidArm.LEFT;
 
         //script hide
-        if (avatar.luaRuntime != null &&
+        if (avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null &&
                 (left && !avatar.luaRuntime.vanilla_model.LEFT_ITEM.getVisible() ||
                 !left && !avatar.luaRuntime.vanilla_model.RIGHT_ITEM.getVisible()
         )) {
@@ -46,7 +46,7 @@ public abstract class ItemInHandRendererMixin {
 
         playerRenderer = (PlayerRenderer) this.entityRenderDispatcher.getRenderer(player);
 
-        if (avatar.luaRuntime != null)
+        if (avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null)
             avatar.luaRuntime.vanilla_model.PLAYER.store(playerRenderer.getModel());
 
         avatar.renderEvent(tickDelta);
@@ -59,13 +59,13 @@ public abstract class ItemInHandRendererMixin {
 
         avatar.postRenderEvent(tickDelta);
 
-        if (avatar.luaRuntime != null)
+        if (avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null)
             avatar.luaRuntime.vanilla_model.PLAYER.restore(playerRenderer.getModel());
     }
 
     @Inject(method = "renderArmWithItem", at = @At("HEAD"), cancellable = true)
     private void renderArmWithItem(AbstractClientPlayer player, float tickDelta, float pitch, InteractionHand hand, float swingProgress, ItemStack item, float equipProgress, PoseStack matrices, MultiBufferSource vertexConsumers, int light, CallbackInfo ci) {
-        if (avatar == null || avatar.luaRuntime == null || item.isEmpty())
+        if (avatar == null || avatar.luaRuntime == null || avatar.luaRuntime.vanilla_model == null || item.isEmpty())
             return;
 
         HumanoidArm arm = hand == InteractionHand.MAIN_HAND ? player.getMainArm() : player.getMainArm().getOpposite();
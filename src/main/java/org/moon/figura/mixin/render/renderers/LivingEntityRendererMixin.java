@@ -83,7 +83,7 @@ public abstract class LivingEntityRendererMixin<T extends LivingEntity, M extend
         if (currentAvatar == null)
             return;
 
-        if (currentAvatar.luaRuntime != null && getModel() instanceof PlayerModel<?> playerModel && entity instanceof Player) {
+        if (currentAvatar.luaRuntime != null && currentAvatar.luaRuntime.vanilla_model != null && getModel() instanceof PlayerModel<?> playerModel && entity instanceof Player) {
             currentAvatar.luaRuntime.vanilla_model.PLAYER.store(playerModel);
             if (currentAvatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
                 currentAvatar.luaRuntime.vanilla_model.PLAYER.alter(playerModel);
@@ -109,7 +109,7 @@ public abstract class LivingEntityRendererMixin<T extends LivingEntity, M extend
 
         //Render avatar with params
         EntityModel<?> model = this.getModel();
-        if (model instanceof PlayerModel<?> playerModel && entity instanceof Player && currentAvatar.luaRuntime != null && currentAvatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
+        if (model instanceof PlayerModel<?> playerModel && entity instanceof Player && currentAvatar.luaRuntime != null && currentAvatar.luaRuntime.vanilla_model != null && currentAvatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
             currentAvatar.luaRuntime.vanilla_model.PLAYER.restore(playerModel);
 
         currentAvatar = null;
@@ -60,7 +60,7 @@ public abstract class PlayerRendererMixin extends LivingEntityRenderer<AbstractC
             return;
 
         //get customizations
-        EntityNameplateCustomization custom = avatar.luaRuntime == null ? null : avatar.luaRuntime.nameplate.ENTITY;
+        EntityNameplateCustomization custom = avatar.luaRuntime == null || avatar.luaRuntime.nameplate == null ? null : avatar.luaRuntime.nameplate.ENTITY;
 
         //enabled
         if (custom != null && !custom.visible) {
@@ -175,7 +175,7 @@ public abstract class PlayerRendererMixin extends LivingEntityRenderer<AbstractC
     @Inject(at = @At(value = "INVOKE", shift = At.Shift.AFTER, target = "Lnet/minecraft/client/model/PlayerModel;setupAnim(Lnet/minecraft/world/entity/LivingEntity;FFFFF)V"), method = "renderHand")
     private void onRenderHand(PoseStack stack, MultiBufferSource multiBufferSource, int light, AbstractClientPlayer player, ModelPart arm, ModelPart sleeve, CallbackInfo ci) {
         avatar = AvatarManager.getAvatarForPlayer(player.getUUID());
-        if (avatar != null && avatar.luaRuntime != null && avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
+        if (avatar != null && avatar.luaRuntime != null && avatar.luaRuntime.vanilla_model != null && avatar.trust.get(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1)
             avatar.luaRuntime.vanilla_model.PLAYER.alter(this.getModel());
     }
 
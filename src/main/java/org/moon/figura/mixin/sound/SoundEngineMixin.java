@@ -13,8 +13,10 @@ import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.sounds.SoundSource;
 import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.Nullable;
+import org.moon.figura.FiguraMod;
 import org.moon.figura.ducks.ChannelHandleAccessor;
 import org.moon.figura.ducks.SoundEngineAccessor;
+import org.moon.figura.lua.api.sound.CustomSound;
 import org.spongepowered.asm.mixin.*;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -48,6 +50,7 @@ public abstract class SoundEngineMixin implements SoundEngineAccessor {
     @Inject(at = @At("RETURN"), method = "tick")
     private void tick(boolean bl, CallbackInfo ci) {
         figuraChannel.scheduleTick();
+        figuraHandlers.keySet().removeIf(ChannelAccess.ChannelHandle::isStopped);
     }
 
     @Inject(at = @At("RETURN"), method = "stopAll")
@@ -86,7 +89,7 @@ public abstract class SoundEngineMixin implements SoundEngineAccessor {
     }
 
     @Override @Intrinsic
-    public void figura$playCustomSound(UUID owner, String name, SoundBuffer buffer, double x, double y, double z, float volume, float pitch, boolean loop) {
+    public void figura$playCustomSound(UUID owner, String name, CustomSound sound, double x, double y, double z, float volume, float pitch, boolean loop) {
         if (!this.loaded || this.listener.getGain() <= 0)
             return;
 
@@ -96,7 +99,8 @@ public abstract class SoundEngineMixin implements SoundEngineAccessor {
             return;
 
         //create handle
-        ChannelAccess.ChannelHandle handle = figura$createHandle(owner, name, Library.Pool.STATIC);
+        boolean shouldStream = sound.isStreamed();
+        ChannelAccess.ChannelHandle handle = figura$createHandle(owner, name, shouldStream ? Library.Pool.STREAMING : Library.Pool.STATIC);
         if (handle == null)
             return;
 
@@ -104,17 +108,29 @@ public abstract class SoundEngineMixin implements SoundEngineAccessor {
         figuraHandlers.put(handle, volume);
 
         //sound properties and play
+        //the sound is decoded here, in the sound thread, if it was not yet
         float finalAttenuation = Math.max(volume, 1f) * 16f;
         Vec3 pos = new Vec3(x, y, z);
         handle.execute(channel -> {
             channel.setPitch(pitch);
             channel.setVolume(finalVol);
             channel.linearAttenuation(finalAttenuation);
-            channel.setLooping(loop);
+            channel.setLooping(loop && !shouldStream);
             channel.setSelfPosition(pos);
             channel.setRelative(false);
-            channel.attachStaticBuffer(buffer);
-            channel.play();
+
+            try {
+                if (shouldStream) {
+                    channel.attachBufferStream(sound.openStream(loop));
+                } else {
+                    SoundBuffer buffer = sound.getBuffer();
+                    if (buffer == null) return;
+                    channel.attachStaticBuffer(buffer);
+                }
+                channel.play();
+            } catch (Exception e) {
+                FiguraMod.LOGGER.warn("Failed to play custom sound \"" + name + "\"", e);
+            }
         });
     }
 
@@ -194,6 +210,16 @@ public abstract class SoundEngineMixin implements SoundEngineAccessor {
         }
     }
 
+    @Override @Intrinsic
+    public boolean figura$isPlaying(UUID owner, String name) {
+        for (ChannelAccess.ChannelHandle channelHandle : figuraHandlers.keySet()) {
+            ChannelHandleAccessor accessor = (ChannelHandleAccessor) channelHandle;
+            if (!channelHandle.isStopped() && accessor.getOwner().compareTo(owner) == 0 && accessor.getName().equals(name))
+                return true;
+        }
+        return false;
+    }
+
     @Override @Intrinsic
     public ChannelAccess.ChannelHandle figura$createHandle(UUID owner, String name, Library.Pool pool) {
         return figuraChannel.createHandle(pool).thenApply(channelHandle -> {
@@ -9,7 +9,8 @@ import java.util.*;
 
 //main class to convert a blockbench model (json) into nbt
 //default fields are omitted from the nbt to save up space
-//note: use the same instance for parsing multiple models for the same avatar
+//note: use the same instance for parsing multiple models for the same avatar, or merge them with withOffsets()
+//instances are not thread safe, parse in parallel with one instance for each model
 public class BlockbenchModelParser {
 
     //offsets for usage of diverse models
@@ -291,13 +292,13 @@ public class BlockbenchModelParser {
         return nbt;
     }
 
-    private static final FiguraVec3
+    private final FiguraVec3
             v1 = FiguraVec3.of(),
             v2 = FiguraVec3.of(),
             v3 = FiguraVec3.of(),
             v4 = FiguraVec3.of();
 
-    private static void reorderVertices(String[] vertexNames, Map<String, Integer> nameToIndex, ListTag vertices) {
+    private void reorderVertices(String[] vertexNames, Map<String, Integer> nameToIndex, ListTag vertices) {
         //Fill in v1, v2, v3, v4 from the given vertices
         readVectors(vertexNames, nameToIndex, vertices);
 
@@ -314,7 +315,7 @@ public class BlockbenchModelParser {
 
     }
 
-    private static void readVectors(String[] vertexNames, Map<String, Integer> nameToIndex, ListTag vertices) {
+    private void readVectors(String[] vertexNames, Map<String, Integer> nameToIndex, ListTag vertices) {
         int i = nameToIndex.get(vertexNames[0]);
         v1.set(vertices.getFloat(3*i), vertices.getFloat(3*i+1), vertices.getFloat(3*i+2));
         i = nameToIndex.get(vertexNames[1]);
@@ -325,7 +326,7 @@ public class BlockbenchModelParser {
         v4.set(vertices.getFloat(3 * i), vertices.getFloat(3 * i + 1), vertices.getFloat(3 * i + 2));
     }
 
-    private static final FiguraVec3
+    private final FiguraVec3
             t1 = FiguraVec3.of(),
             t2 = FiguraVec3.of(),
             t3 = FiguraVec3.of(),
@@ -334,7 +335,7 @@ public class BlockbenchModelParser {
     /**
      * Checks whether the two points given are on opposite sides of the line given.
      */
-    private static boolean testOppositeSides(FiguraVec3 linePoint1, FiguraVec3 linePoint2, FiguraVec3 point1, FiguraVec3 point2) {
+    private boolean testOppositeSides(FiguraVec3 linePoint1, FiguraVec3 linePoint2, FiguraVec3 point1, FiguraVec3 point2) {
         t1.set(linePoint1);
         t2.set(linePoint2);
         t3.set(point1);
@@ -550,6 +551,45 @@ public class BlockbenchModelParser {
 
     // -- helper functions -- //
 
+    //moves the texture and animation ids of a model that was parsed by its own parser, so it can be merged after the other models
+    //the model nbt is copied, so the same parsed data can be merged more than once
+    public static ModelData withOffsets(ModelData data, int textureOffset, int animationOffset) {
+        CompoundTag model = data.modelNbt().copy();
+        if (textureOffset != 0 || animationOffset != 0)
+            offsetIds(model, textureOffset, animationOffset);
+        return new ModelData(data.textureList(), data.animationList(), model);
+    }
+
+    private static void offsetIds(CompoundTag nbt, int textureOffset, int animationOffset) {
+        //cube faces
+        if (nbt.contains("cube_data")) {
+            CompoundTag faces = nbt.getCompound("cube_data");
+            for (String key : faces.getAllKeys()) {
+                CompoundTag face = faces.getCompound(key);
+                face.putInt("tex", face.getInt("tex") + textureOffset);
+            }
+        }
+
+        //mesh faces, the texture id is stored shifted left 4 bits
+        if (nbt.contains("mesh_data")) {
+            ListTag texes = nbt.getCompound("mesh_data").getList("tex", Tag.TAG_SHORT);
+            for (int i = 0; i < texes.size(); i++)
+                texes.set(i, ShortTag.valueOf((short) (texes.getShort(i) + (textureOffset << 4))));
+        }
+
+        //group animations
+        ListTag anims = nbt.getList("anim", Tag.TAG_COMPOUND);
+        for (int i = 0; i < anims.size(); i++) {
+            CompoundTag anim = anims.getCompound(i);
+            if (anim.contains("id"))
+                anim.putInt("id", anim.getInt("id") + animationOffset);
+        }
+
+        ListTag children = nbt.getList("chld", Tag.TAG_COMPOUND);
+        for (int i = 0; i < children.size(); i++)
+            offsetIds(children.getCompound(i), textureOffset, animationOffset);
+    }
+
     //converts a float array into a nbt list
     public static ListTag toNbtList(float[] floats) {
         ListTag list = new ListTag();
@@ -31,10 +31,14 @@ public class TrustContainer {
         TICK_INST(0, 32767),
         WORLD_RENDER_INST(0, 32767),
         RENDER_INST(0, 32767),
+        TICK_TIME(0, 50),
+        RENDER_TIME(0, 16),
         COMPLEXITY(0, 8191),
         PARTICLES(0, 63),
         SOUNDS(0, 63),
         BB_ANIMATIONS(0, 255),
+        BLOCK_QUERY_VOLUME(0, 32767),
+        STORED_VARIABLES(0, 1023),
         VANILLA_MODEL_EDIT,
         NAMEPLATE_EDIT,
         OFFSCREEN_RENDERING,
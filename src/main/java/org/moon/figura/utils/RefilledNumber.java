@@ -53,6 +53,11 @@ public class RefilledNumber {
         return (int) Math.floor(current);
     }
 
+    //returns the max value
+    public double getMax() {
+        return max;
+    }
+
     //updates the max value
     public void set(double max) {
         this.max = Math.ceil(max);
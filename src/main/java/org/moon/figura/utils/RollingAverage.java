@@ -0,0 +1,54 @@
+package org.moon.figura.utils;
+
+import java.util.Arrays;
+
+/**
+ * class that keeps track of the last "size" samples added to it
+ * used to report smoothed timings instead of the raw, noisy, value of a single call
+ */
+public class RollingAverage {
+
+    private final long[] samples;
+    private int index, count;
+    private long sum, last;
+
+    //default constructor, one second worth of ticks
+    public RollingAverage() {
+        this(20);
+    }
+
+    public RollingAverage(int size) {
+        this.samples = new long[Math.max(size, 1)];
+    }
+
+    //adds a new sample, replacing the oldest one
+    public void add(long value) {
+        sum += value - samples[index];
+        samples[index] = value;
+        index = (index + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        last = value;
+    }
+
+    //returns the average of the stored samples
+    public double getAverage() {
+        return count == 0 ? 0d : (double) sum / count;
+    }
+
+    //returns the sum of the stored samples, where the missing samples count as zero
+    public long getSum() {
+        return sum;
+    }
+
+    //returns the last added sample
+    public long getLast() {
+        return last;
+    }
+
+    //clears all samples
+    public void reset() {
+        Arrays.fill(samples, 0L);
+        index = count = 0;
+        sum = last = 0L;
+    }
+}
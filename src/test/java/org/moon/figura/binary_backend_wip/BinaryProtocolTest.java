@@ -0,0 +1,408 @@
+package org.moon.figura.binary_backend_wip;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.junit.jupiter.api.Test;
+import org.moon.figura.backend.BackendFeatures;
+import org.moon.figura.backend.EventHandler;
+import org.moon.figura.binary_backend_wip.handlers.MessageHandlerV0;
+import org.moon.figura.binary_backend_wip.packets.AbstractPacket;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+import org.moon.figura.binary_backend_wip.packets.client2server.*;
+import org.moon.figura.binary_backend_wip.packets.server2client.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryProtocolTest {
+
+    private static final UUID ALICE = UUID.fromString("0f8a3b52-5c1e-4a43-9a8e-3c4cf1c5a001");
+    private static final UUID BOB = UUID.fromString("7d2e9c10-3b7a-4f0e-8d55-91a1f2b6b002");
+
+    // -- C2S codec -- //
+
+    @Test
+    public void uploadAvatar() throws IOException {
+        C2SUploadAvatarPacket packet = new C2SUploadAvatarPacket();
+        packet.avatarID = "avatar";
+        packet.data = new byte[]{1, 2, 3, 4, 5};
+
+        MockBackendServer.C2SMessage msg = roundTrip(packet);
+        assertEquals(86, msg.type());
+        assertEquals("avatar", msg.string());
+        assertArrayEquals(packet.data, msg.data());
+    }
+
+    @Test
+    public void deleteAvatar() throws IOException {
+        C2SDeleteAvatarPacket packet = new C2SDeleteAvatarPacket();
+        packet.avatarID = "avätar";
+
+        MockBackendServer.C2SMessage msg = roundTrip(packet);
+        assertEquals(87, msg.type());
+        assertEquals("avätar", msg.string());
+    }
+
+    @Test
+    public void downloadAvatar() throws IOException {
+        C2SDownloadAvatarPacket packet = new C2SDownloadAvatarPacket();
+        packet.owner = ALICE;
+        packet.avatarID = "avatar";
+        packet.hash = MockBackendServer.hash(new byte[]{9});
+
+        MockBackendServer.C2SMessage msg = roundTrip(packet);
+        assertEquals(88, msg.type());
+        assertEquals(ALICE, msg.uuid());
+        assertEquals("avatar", msg.string());
+        assertEquals(packet.hash, msg.hash());
+
+        //no cached copy is sent as an empty hash
+        packet.hash = null;
+        assertEquals("", roundTrip(packet).hash());
+    }
+
+    @Test
+    public void ping() throws IOException {
+        C2SPingPacket packet = new C2SPingPacket();
+        packet.pingID = -1;
+        packet.sync = true;
+        packet.data = new byte[300];
+        packet.data[299] = 42;
+
+        MockBackendServer.C2SMessage msg = roundTrip(packet);
+        assertEquals(89, msg.type());
+        assertEquals(-1, msg.pingID());
+        assertTrue(msg.sync());
+        assertArrayEquals(packet.data, msg.data());
+
+        packet.pingID = 123456;
+        packet.sync = false;
+        packet.data = new byte[0];
+        msg = roundTrip(packet);
+        assertEquals(123456, msg.pingID());
+        assertFalse(msg.sync());
+        assertEquals(0, msg.data().length);
+    }
+
+    @Test
+    public void subscribe() throws IOException {
+        C2SSubscribePacket packet = new C2SSubscribePacket();
+        packet.target = BOB;
+
+        packet.subscribe = true;
+        MockBackendServer.C2SMessage msg = roundTrip(packet);
+        assertEquals(90, msg.type());
+        assertEquals(BOB, msg.uuid());
+
+        packet.subscribe = false;
+        msg = roundTrip(packet);
+        assertEquals(91, msg.type());
+        assertEquals(BOB, msg.uuid());
+    }
+
+    // -- S2C codec -- //
+
+    @Test
+    public void avatar() throws IOException {
+        byte[] data = {5, 4, 3, 2, 1};
+        S2CAvatarPacket packet = read(PacketType.S2C_AVATAR, MockBackendServer.avatar(ALICE, data));
+        assertEquals(104, PacketType.S2C_AVATAR.id);
+        assertEquals(ALICE, packet.owner);
+        assertArrayEquals(data, packet.data);
+    }
+
+    @Test
+    public void s2cPing() throws IOException {
+        byte[] data = {-126, 65};
+        S2CPingPacket packet = read(PacketType.S2C_PING, MockBackendServer.ping(BOB, -1, data));
+        assertEquals(105, PacketType.S2C_PING.id);
+        assertEquals(BOB, packet.owner);
+        assertEquals(-1, packet.pingID);
+        assertArrayEquals(data, packet.data);
+    }
+
+    @Test
+    public void event() throws IOException {
+        S2CEventPacket packet = read(PacketType.S2C_EVENT, MockBackendServer.event(ALICE, "upload"));
+        assertEquals(106, PacketType.S2C_EVENT.id);
+        assertEquals(ALICE, packet.owner);
+        assertEquals("upload", packet.event);
+    }
+
+    @Test
+    public void avatarCached() throws IOException {
+        String hash = MockBackendServer.hash(new byte[]{1});
+        S2CAvatarCachedPacket packet = read(PacketType.S2C_AVATAR_CACHED, MockBackendServer.avatarCached(BOB, hash));
+        assertEquals(107, PacketType.S2C_AVATAR_CACHED.id);
+        assertEquals(BOB, packet.owner);
+        assertEquals(hash, packet.hash);
+    }
+
+    // -- malformed data -- //
+
+    @Test
+    public void truncatedData() {
+        //a length bigger than what was received must fail before allocating
+        ByteBuffer tooLong = ByteBuffer.wrap(new byte[]{(byte) 0xE8, 0x07, 1, 2, 3});
+        assertThrows(IOException.class, () -> ByteStreamConverter.readByteArray(tooLong));
+
+        ByteBuffer negative = ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        assertThrows(IOException.class, () -> ByteStreamConverter.readByteArray(negative));
+
+        ByteBuffer cutVarInt = ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80});
+        assertThrows(IOException.class, () -> ByteStreamConverter.readVarInt(cutVarInt));
+
+        assertThrows(IOException.class, () -> ByteStreamConverter.readBoolean(ByteBuffer.allocate(0)));
+        assertThrows(IOException.class, () -> ByteStreamConverter.readUUID(ByteBuffer.allocate(8)));
+    }
+
+    // -- negotiation -- //
+
+    @Test
+    public void negotiation() {
+        BackendFeatures features = new BackendFeatures();
+        List<JsonObject> replies = features.negotiate(MockBackendServer.connected());
+        assertTrue(features.binary);
+        assertTrue(features.pingV2);
+        assertTrue(features.pingBatch);
+        assertEquals(List.of("binary", "pings", "pingBatch"), replies.stream().map(reply -> reply.get("type").getAsString()).toList());
+
+        //an older backend, without the newer features or with an older version of them
+        JsonObject old = MockBackendServer.connected();
+        old.remove("pingBatch");
+        old.addProperty("pings", 1);
+        replies = features.negotiate(old);
+        assertTrue(features.binary);
+        assertFalse(features.pingV2);
+        assertFalse(features.pingBatch);
+        assertEquals(1, replies.size());
+    }
+
+    // -- mock server -- //
+
+    @Test
+    public void mockServer() throws Exception {
+        MockBackendServer server = new MockBackendServer();
+        server.startAndWait();
+
+        TestClient alice = new TestClient(server, ALICE);
+        TestClient bob = new TestClient(server, BOB);
+        try {
+            byte[] data = {10, 20, 30};
+
+            //upload, then download our own avatar, so we know the upload was handled
+            alice.send(upload(data));
+            alice.send(download(ALICE, null));
+            assertArrayEquals(data, alice.next(AvatarReceived.class).data());
+
+            //the server only answers binary messages after the client agreed to it
+            assertEquals(Set.of("binary", "pings", "pingBatch"), server.getFeatures(ALICE));
+            assertTrue(bob.features.binary && bob.features.pingV2 && bob.features.pingBatch);
+
+            //bob already has this avatar cached
+            bob.send(subscribe(ALICE, true));
+            bob.send(download(ALICE, MockBackendServer.hash(data)));
+            CachedReceived cached = bob.next(CachedReceived.class);
+            assertEquals(ALICE, cached.owner());
+            assertEquals(MockBackendServer.hash(data), cached.hash());
+
+            //unsynced pings only go to the subscribers, synced ones also come back
+            alice.send(ping(5, false, new byte[]{1}));
+            alice.send(ping(-1, true, new byte[]{2}));
+
+            PingReceived first = bob.next(PingReceived.class);
+            assertEquals(ALICE, first.owner());
+            assertEquals(5, first.id());
+            assertArrayEquals(new byte[]{1}, first.data());
+            assertEquals(-1, bob.next(PingReceived.class).id());
+
+            PingReceived echo = alice.next(PingReceived.class);
+            assertEquals(-1, echo.id());
+            assertArrayEquals(new byte[]{2}, echo.data());
+
+            //avatar changes are announced to the subscribers, with events the game knows
+            alice.send(delete());
+            EventReceived event = bob.next(EventReceived.class);
+            assertEquals(ALICE, event.owner());
+            assertEquals(EventHandler.DELETE, event.handler());
+
+            byte[] newData = {40, 50};
+            alice.send(upload(newData));
+            assertEquals(EventHandler.UPLOAD, bob.next(EventReceived.class).handler());
+
+            //after unsubscribing, bob only gets what he asks for
+            bob.send(subscribe(ALICE, false));
+            bob.send(download(ALICE, MockBackendServer.hash(data)));
+            assertArrayEquals(newData, bob.next(AvatarReceived.class).data());
+
+            alice.send(ping(7, true, new byte[0]));
+            assertEquals(7, alice.next(PingReceived.class).id());
+            assertNull(bob.received.poll(200, TimeUnit.MILLISECONDS));
+            assertTrue(alice.received.isEmpty());
+        } finally {
+            alice.closeBlocking();
+            bob.closeBlocking();
+            server.stop(1000);
+        }
+    }
+
+    // -- helpers -- //
+
+    private static byte[] bytes(AbstractPacket packet) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        packet.write(new DataOutputStream(baos));
+        return baos.toByteArray();
+    }
+
+    private static MockBackendServer.C2SMessage roundTrip(AbstractPacket packet) throws IOException {
+        return MockBackendServer.decode(ByteBuffer.wrap(bytes(packet)));
+    }
+
+    private static <T extends AbstractS2CPacket> T read(PacketType<T> type, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        assertEquals(type.id, ByteStreamConverter.readVarInt(buf));
+        T packet = type.constructor.get();
+        packet.fill(buf);
+        assertFalse(buf.hasRemaining());
+        return packet;
+    }
+
+    private static C2SUploadAvatarPacket upload(byte[] data) {
+        C2SUploadAvatarPacket packet = new C2SUploadAvatarPacket();
+        packet.avatarID = "avatar";
+        packet.data = data;
+        return packet;
+    }
+
+    private static C2SDeleteAvatarPacket delete() {
+        C2SDeleteAvatarPacket packet = new C2SDeleteAvatarPacket();
+        packet.avatarID = "avatar";
+        return packet;
+    }
+
+    private static C2SDownloadAvatarPacket download(UUID owner, String hash) {
+        C2SDownloadAvatarPacket packet = new C2SDownloadAvatarPacket();
+        packet.owner = owner;
+        packet.avatarID = "avatar";
+        packet.hash = hash;
+        return packet;
+    }
+
+    private static C2SPingPacket ping(int id, boolean sync, byte[] data) {
+        C2SPingPacket packet = new C2SPingPacket();
+        packet.pingID = id;
+        packet.sync = sync;
+        packet.data = data;
+        return packet;
+    }
+
+    private static C2SSubscribePacket subscribe(UUID target, boolean subscribe) {
+        C2SSubscribePacket packet = new C2SSubscribePacket();
+        packet.target = target;
+        packet.subscribe = subscribe;
+        return packet;
+    }
+
+    //what the game handlers would have been called with
+    private record AvatarReceived(UUID owner, byte[] data) {}
+    private record CachedReceived(UUID owner, String hash) {}
+    private record PingReceived(UUID owner, int id, byte[] data) {}
+    private record EventReceived(UUID owner, EventHandler handler) {}
+
+    //connects like the game does: agrees to the offered features, then reads the binary messages with MessageHandlerV0
+    private static class TestClient extends WebSocketClient implements MessageHandlerV0.Listener {
+
+        private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        private final BackendFeatures features = new BackendFeatures();
+        private final CountDownLatch negotiated = new CountDownLatch(1);
+        private final NewMessageHandler handler = MessageHandlerV0.get(this);
+
+        private TestClient(MockBackendServer server, UUID uuid) throws InterruptedException {
+            super(URI.create("ws://127.0.0.1:" + server.getPort()), Map.of("uuid", uuid.toString()));
+            if (!connectBlocking(10, TimeUnit.SECONDS))
+                throw new IllegalStateException("Could not connect to the mock backend");
+            if (!negotiated.await(10, TimeUnit.SECONDS))
+                throw new IllegalStateException("The mock backend did not send the connected message");
+        }
+
+        private void send(AbstractPacket packet) throws IOException {
+            send(bytes(packet));
+        }
+
+        private <T> T next(Class<T> type) throws InterruptedException {
+            Object message = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message, "Timed out waiting for " + type.getSimpleName());
+            return assertInstanceOf(type, message);
+        }
+
+        @Override
+        public void avatar(UUID owner, byte[] data) {
+            received.add(new AvatarReceived(owner, data));
+        }
+
+        @Override
+        public void avatarCached(UUID owner, String hash) {
+            received.add(new CachedReceived(owner, hash));
+        }
+
+        @Override
+        public void ping(UUID owner, int id, byte[] data) {
+            received.add(new PingReceived(owner, id, data));
+        }
+
+        //resolved the same way EventHandler.readEvent does, so unknown event names fail the test
+        @Override
+        public void event(UUID owner, JsonObject event) {
+            EventHandler handler;
+            try {
+                handler = EventHandler.valueOf(event.get("type").getAsString().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                handler = null;
+            }
+            received.add(handler == null ? event : new EventReceived(owner, handler));
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {}
+
+        @Override
+        public void onMessage(String message) {
+            JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+            if (!json.get("type").getAsString().equals("connected"))
+                return;
+
+            for (JsonObject reply : features.negotiate(json))
+                send(reply.toString());
+            negotiated.countDown();
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            handler.acceptMessage(bytes);
+            handler.flushActionQueue();
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {}
+
+        @Override
+        public void onError(Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
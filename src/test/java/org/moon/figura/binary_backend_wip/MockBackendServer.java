@@ -0,0 +1,232 @@
+package org.moon.figura.binary_backend_wip;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.moon.figura.binary_backend_wip.packets.PacketType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A minimal local backend speaking the binary protocol, so the packets can be tested against a real websocket.
+ * There is no auth server, clients identify themselves with an "uuid" header.
+ * Like the real one, it offers the optional features in the json connected message,
+ * and only accepts binary messages after the client agreed to the binary protocol.
+ */
+public class MockBackendServer extends WebSocketServer {
+
+    private static final Set<String> OFFERED = Set.of("binary", "pings", "pingBatch");
+
+    private final Map<WebSocket, UUID> clients = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<WebSocket>> subscribers = new ConcurrentHashMap<>();
+    private final Map<UUID, byte[]> avatars = new ConcurrentHashMap<>();
+    private final Map<WebSocket, Set<String>> features = new ConcurrentHashMap<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    public MockBackendServer() {
+        super(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    public void startAndWait() throws InterruptedException {
+        start();
+        if (!started.await(10, TimeUnit.SECONDS))
+            throw new IllegalStateException("Mock backend did not start");
+    }
+
+    // -- server -- //
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        clients.put(conn, UUID.fromString(handshake.getFieldValue("uuid")));
+        features.put(conn, ConcurrentHashMap.newKeySet());
+        conn.send(connected().toString());
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        clients.remove(conn);
+        features.remove(conn);
+        for (Set<WebSocket> set : subscribers.values())
+            set.remove(conn);
+    }
+
+    //text messages are only used to agree to the offered features
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        JsonObject json = JsonParser.parseString(message).getAsJsonObject();
+        String type = json.get("type").getAsString();
+        if (!json.has("version") || !OFFERED.contains(type))
+            conn.close(1003, "Unexpected message " + type);
+        else
+            features.get(conn).add(type);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        if (!features.get(conn).contains("binary")) {
+            conn.close(1002, "Binary protocol was not negotiated");
+            return;
+        }
+
+        UUID client = clients.get(conn);
+        try {
+            C2SMessage msg = decode(message);
+            switch (msg.type) {
+                case 86 -> { //upload
+                    avatars.put(client, msg.data);
+                    broadcast(client, event(client, "upload"));
+                }
+                case 87 -> { //delete
+                    avatars.remove(client);
+                    broadcast(client, event(client, "delete"));
+                }
+                case 88 -> { //download
+                    byte[] data = avatars.get(msg.uuid);
+                    if (data != null)
+                        conn.send(hash(data).equals(msg.hash) ? avatarCached(msg.uuid, msg.hash) : avatar(msg.uuid, data));
+                }
+                case 89 -> { //ping
+                    byte[] ping = ping(client, msg.pingID, msg.data);
+                    broadcast(client, ping);
+                    if (msg.sync)
+                        conn.send(ping);
+                }
+                case 90 -> subscribers.computeIfAbsent(msg.uuid, uuid -> ConcurrentHashMap.newKeySet()).add(conn);
+                case 91 -> subscribers.getOrDefault(msg.uuid, Set.of()).remove(conn);
+                default -> throw new IOException("Unexpected packet " + msg.type);
+            }
+        } catch (Exception e) {
+            conn.close(1002, e.toString());
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        ex.printStackTrace();
+    }
+
+    private void broadcast(UUID owner, byte[] message) {
+        for (WebSocket conn : subscribers.getOrDefault(owner, Set.of()))
+            conn.send(message);
+    }
+
+    public Set<String> getFeatures(UUID client) {
+        for (Map.Entry<WebSocket, UUID> entry : clients.entrySet())
+            if (entry.getValue().equals(client))
+                return features.getOrDefault(entry.getKey(), Set.of());
+        return Set.of();
+    }
+
+    //the connected message, with the features the client can agree to
+    public static JsonObject connected() {
+        JsonObject limits = new JsonObject();
+        limits.addProperty("maxAvatarSize", 100000);
+        limits.addProperty("maxAvatars", 1);
+        limits.addProperty("pingSize", 1024);
+        limits.addProperty("pingRate", 32);
+        limits.addProperty("equip", 1);
+        limits.addProperty("upload", 1);
+        limits.addProperty("download", 50);
+
+        JsonObject json = new JsonObject();
+        json.addProperty("type", "connected");
+        json.add("limits", limits);
+        json.addProperty("binary", 0);
+        json.addProperty("pings", 2);
+        json.addProperty("pingBatch", 1);
+        return json;
+    }
+
+    // -- server side codec -- //
+
+    //every field any C2S packet can have, only the ones of its type are filled
+    public record C2SMessage(int type, UUID uuid, String string, String hash, int pingID, boolean sync, byte[] data) {}
+
+    public static C2SMessage decode(ByteBuffer buf) throws IOException {
+        int type = ByteStreamConverter.readVarInt(buf);
+        C2SMessage msg = switch (type) {
+            case 86 -> new C2SMessage(type, null, ByteStreamConverter.readString(buf), null, 0, false, ByteStreamConverter.readByteArray(buf));
+            case 87 -> new C2SMessage(type, null, ByteStreamConverter.readString(buf), null, 0, false, null);
+            case 88 -> new C2SMessage(type, ByteStreamConverter.readUUID(buf), ByteStreamConverter.readString(buf), ByteStreamConverter.readString(buf), 0, false, null);
+            case 89 -> {
+                int id = buf.getInt();
+                boolean sync = ByteStreamConverter.readBoolean(buf);
+                yield new C2SMessage(type, null, null, null, id, sync, ByteStreamConverter.readByteArray(buf));
+            }
+            case 90, 91 -> new C2SMessage(type, ByteStreamConverter.readUUID(buf), null, null, 0, false, null);
+            default -> throw new IOException("Unknown C2S packet " + type);
+        };
+
+        if (buf.hasRemaining())
+            throw new IOException(buf.remaining() + " bytes left after packet " + type);
+        return msg;
+    }
+
+    public static byte[] avatar(UUID owner, byte[] data) throws IOException {
+        return encode(PacketType.S2C_AVATAR.id, dos -> {
+            ByteStreamConverter.writeUUID(dos, owner);
+            ByteStreamConverter.writeByteArray(dos, data);
+        });
+    }
+
+    public static byte[] ping(UUID owner, int pingID, byte[] data) throws IOException {
+        return encode(PacketType.S2C_PING.id, dos -> {
+            ByteStreamConverter.writeUUID(dos, owner);
+            dos.writeInt(pingID);
+            ByteStreamConverter.writeByteArray(dos, data);
+        });
+    }
+
+    public static byte[] event(UUID owner, String event) throws IOException {
+        return encode(PacketType.S2C_EVENT.id, dos -> {
+            ByteStreamConverter.writeUUID(dos, owner);
+            ByteStreamConverter.writeString(dos, event);
+        });
+    }
+
+    public static byte[] avatarCached(UUID owner, String hash) throws IOException {
+        return encode(PacketType.S2C_AVATAR_CACHED.id, dos -> {
+            ByteStreamConverter.writeUUID(dos, owner);
+            ByteStreamConverter.writeString(dos, hash);
+        });
+    }
+
+    public static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream dos) throws IOException;
+    }
+
+    private static byte[] encode(int id, Writer writer) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        ByteStreamConverter.writeVarInt(dos, id);
+        writer.write(dos);
+        return baos.toByteArray();
+    }
+}
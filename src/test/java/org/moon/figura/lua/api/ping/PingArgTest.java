@@ -0,0 +1,230 @@
+package org.moon.figura.lua.api.ping;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.moon.figura.lua.LuaTypeManager;
+import org.moon.figura.math.vector.FiguraVec2;
+import org.moon.figura.math.vector.FiguraVec3;
+import org.moon.figura.math.vector.FiguraVec4;
+import org.moon.figura.math.vector.FiguraVector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PingArgTest {
+
+    private static LuaTypeManager typeManager;
+
+    @BeforeAll
+    public static void setup() {
+        //the reader only needs the metatables to wrap vectors
+        typeManager = new LuaTypeManager(null);
+        typeManager.generateMetatableFor(FiguraVec2.class);
+        typeManager.generateMetatableFor(FiguraVec3.class);
+        typeManager.generateMetatableFor(FiguraVec4.class);
+    }
+
+    @Test
+    public void nil() {
+        Varargs result = roundTrip(true, LuaValue.NIL, LuaValue.valueOf(1), LuaValue.NIL);
+        assertEquals(3, result.narg());
+        assertTrue(result.arg(1).isnil());
+        assertTrue(result.arg(3).isnil());
+    }
+
+    @Test
+    public void booleans() {
+        assertRoundTrip(LuaValue.TRUE, LuaValue.FALSE);
+        //header and one byte per boolean
+        assertEquals(3, encode(true, LuaValue.TRUE, LuaValue.FALSE).length);
+    }
+
+    @Test
+    public void smallInts() {
+        assertRoundTrip(LuaValue.valueOf(0), LuaValue.valueOf(1), LuaValue.valueOf(191));
+        //small ints are stored in the type byte
+        assertEquals(2, encode(true, LuaValue.valueOf(191)).length);
+        assertEquals(4, encode(true, LuaValue.valueOf(192)).length);
+    }
+
+    @Test
+    public void largeInts() {
+        assertRoundTrip(LuaValue.valueOf(192), LuaValue.valueOf(-1), LuaValue.valueOf(-123456), LuaValue.valueOf(Integer.MAX_VALUE), LuaValue.valueOf(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void floats() {
+        assertRoundTrip(LuaValue.valueOf(0.5), LuaValue.valueOf(-2.25), LuaValue.valueOf(0.1), LuaValue.valueOf(1e300), LuaValue.valueOf(Double.POSITIVE_INFINITY));
+        //doubles that fit a float are written as one
+        assertEquals(6, encode(true, LuaValue.valueOf(0.5)).length);
+        assertEquals(10, encode(true, LuaValue.valueOf(0.1)).length);
+
+        Varargs nan = roundTrip(true, LuaValue.valueOf(Double.NaN));
+        assertTrue(Double.isNaN(nan.arg1().todouble()));
+    }
+
+    @Test
+    public void strings() {
+        assertRoundTrip(LuaValue.valueOf(""), LuaValue.valueOf("hello"), LuaValue.valueOf("héllo ✓"));
+
+        //v2 strings have no 64 KB limit
+        String big = "a".repeat(70000);
+        assertRoundTrip(LuaValue.valueOf(big));
+    }
+
+    @Test
+    public void repeatedStrings() {
+        LuaValue s = LuaValue.valueOf("repeated string");
+        assertRoundTrip(s, s, LuaValue.valueOf("other"), s);
+
+        //the second one is only a reference to the first
+        int once = encode(true, s).length;
+        int twice = encode(true, s, s).length;
+        assertEquals(2, twice - once);
+    }
+
+    @Test
+    public void arrays() {
+        LuaTable array = LuaValue.listOf(new LuaValue[]{LuaValue.valueOf(1), LuaValue.valueOf("two"), LuaValue.TRUE});
+        assertRoundTrip(array);
+        assertRoundTrip(new LuaTable());
+    }
+
+    @Test
+    public void sparseTables() {
+        LuaTable sparse = new LuaTable();
+        sparse.set(1, LuaValue.valueOf("a"));
+        sparse.set(3, LuaValue.valueOf("c"));
+        sparse.set(5, LuaValue.valueOf("e"));
+        assertRoundTrip(sparse);
+
+        //same key count as the length, but not only the keys 1 to n
+        LuaTable holes = new LuaTable();
+        holes.set(1, LuaValue.valueOf(1));
+        holes.set(2, LuaValue.valueOf(2));
+        holes.set(4, LuaValue.valueOf(4));
+        holes.set("x", LuaValue.valueOf(5));
+        assertRoundTrip(holes);
+
+        LuaTable dictionary = new LuaTable();
+        dictionary.set("key", LuaValue.valueOf("value"));
+        dictionary.set(LuaValue.valueOf(1.5), LuaValue.TRUE);
+        dictionary.set(-1, LuaValue.FALSE);
+        assertRoundTrip(dictionary);
+    }
+
+    @Test
+    public void nestedTables() {
+        LuaTable inner = new LuaTable();
+        inner.set("name", LuaValue.valueOf("inner"));
+        inner.set(1, LuaValue.valueOf(0.25));
+
+        LuaTable outer = new LuaTable();
+        outer.set(1, inner);
+        outer.set(2, LuaValue.listOf(new LuaValue[]{inner, LuaValue.valueOf("name")}));
+        outer.set("self", LuaValue.valueOf("name"));
+        assertRoundTrip(outer);
+    }
+
+    @Test
+    public void vectors() {
+        assertRoundTrip(
+                typeManager.javaToLua(FiguraVec2.of(1, 2)),
+                typeManager.javaToLua(FiguraVec3.of(0.5, -3, 1024)),
+                typeManager.javaToLua(FiguraVec3.of(0.1, 0.2, 0.3)),
+                typeManager.javaToLua(FiguraVec4.of(1, 2, 3, 4))
+        );
+    }
+
+    @Test
+    public void v1() {
+        LuaTable table = new LuaTable();
+        table.set(1, LuaValue.valueOf("a"));
+        table.set("b", LuaValue.valueOf(2.5));
+
+        LuaValue[] values = {LuaValue.TRUE, LuaValue.valueOf(1234), LuaValue.valueOf(0.1), LuaValue.valueOf("text"), table, typeManager.javaToLua(FiguraVec3.of(1, 2, 3))};
+        Varargs result = roundTrip(false, values);
+        assertEquals(values.length, result.narg());
+        for (int i = 0; i < values.length; i++)
+            assertLuaEquals(values[i], result.arg(i + 1));
+    }
+
+    @Test
+    public void v1MatchesV2() {
+        LuaTable nested = new LuaTable();
+        nested.set("name", LuaValue.valueOf("nested"));
+        nested.set(1, LuaValue.valueOf(-7));
+
+        LuaTable table = new LuaTable();
+        table.set(1, LuaValue.valueOf("a"));
+        table.set(2, nested);
+        table.set("b", LuaValue.valueOf(2.5));
+        table.set("c", LuaValue.FALSE);
+
+        LuaValue text = LuaValue.valueOf("text");
+        LuaValue[] values = {
+                LuaValue.NIL, LuaValue.TRUE, LuaValue.FALSE,
+                LuaValue.valueOf(0), LuaValue.valueOf(191), LuaValue.valueOf(192), LuaValue.valueOf(-123456), LuaValue.valueOf(Integer.MAX_VALUE),
+                LuaValue.valueOf(0.5), LuaValue.valueOf(0.1), LuaValue.valueOf(-1e300),
+                text, LuaValue.valueOf(""), LuaValue.valueOf("héllo ✓"), text,
+                table, LuaValue.listOf(new LuaValue[]{LuaValue.valueOf(1), text, LuaValue.TRUE}), new LuaTable(),
+                typeManager.javaToLua(FiguraVec2.of(1, 2)), typeManager.javaToLua(FiguraVec3.of(0.1, -3, 1024)), typeManager.javaToLua(FiguraVec4.of(1, 2, 3, 4))
+        };
+
+        //both formats must decode the same inputs to the same values
+        Varargs v1 = roundTrip(false, values);
+        Varargs v2 = roundTrip(true, values);
+        assertEquals(values.length, v1.narg());
+        assertEquals(values.length, v2.narg());
+        for (int i = 1; i <= values.length; i++) {
+            if (values[i - 1].isnil()) {
+                assertTrue(v1.arg(i).isnil());
+                assertTrue(v2.arg(i).isnil());
+            } else {
+                assertLuaEquals(v1.arg(i), v2.arg(i));
+            }
+        }
+    }
+
+    // -- helpers -- //
+
+    private static byte[] encode(boolean v2, LuaValue... values) {
+        byte[] bytes = new PingArg(LuaValue.varargsOf(values)).toByteArray(v2);
+        assertNotNull(bytes);
+        return bytes;
+    }
+
+    private static Varargs roundTrip(boolean v2, LuaValue... values) {
+        Varargs result = PingArg.fromByteArray(encode(v2, values), typeManager);
+        assertNotNull(result);
+        return result;
+    }
+
+    private static void assertRoundTrip(LuaValue... values) {
+        Varargs result = roundTrip(true, values);
+        assertEquals(values.length, result.narg());
+        for (int i = 0; i < values.length; i++)
+            assertLuaEquals(values[i], result.arg(i + 1));
+    }
+
+    private static void assertLuaEquals(LuaValue expected, LuaValue actual) {
+        if (expected.istable()) {
+            assertTrue(actual.istable(), "expected a table, got " + actual);
+            LuaTable a = expected.checktable(), b = actual.checktable();
+            assertEquals(a.keyCount(), b.keyCount());
+            for (LuaValue key : a.keys())
+                assertLuaEquals(a.get(key), b.get(key));
+        } else if (expected.isuserdata(FiguraVector.class)) {
+            FiguraVector<?, ?> a = (FiguraVector<?, ?>) expected.checkuserdata();
+            FiguraVector<?, ?> b = (FiguraVector<?, ?>) actual.checkuserdata(FiguraVector.class);
+            assertEquals(a.size(), b.size());
+            for (int i = 0; i < a.size(); i++)
+                assertEquals(a.index(i), b.index(i));
+        } else {
+            assertEquals(expected.type(), actual.type());
+            assertTrue(expected.raweq(actual), "expected " + expected + ", got " + actual);
+        }
+    }
+}